@@ -0,0 +1,112 @@
+package com.smilebat.learntribe.openai.benchmarks;
+
+import com.smilebat.learntribe.dataaccess.jpa.entity.Challenge;
+import com.smilebat.learntribe.openai.services.helpers.AbstractChallenge;
+import com.smilebat.learntribe.openai.services.helpers.ChallengePattern;
+import com.smilebat.learntribe.openai.services.helpers.LChallengeParser;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for challenge parsing.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChallengeParserBenchmark {
+
+  @Param({"STANDARD", "BRACES", "TABS", "INLINE", "LOWERCASE"})
+  private String format;
+
+  private final LChallengeParser parser = new LChallengeParser();
+
+  private String completion;
+
+  private List<String> lines;
+
+  private List<String> optionLines;
+
+  /** Selects the completion and pre splits the corpus lines. */
+  @Setup
+  public void setUp() {
+    completion = CompletionCorpus.CHALLENGES.get(formatIndex());
+    lines = CompletionCorpus.challengeLines();
+    optionLines =
+        lines
+            .stream()
+            .filter(line -> ChallengePattern.evaluate(line) == ChallengePattern.OPTIONS)
+            .collect(Collectors.toList());
+  }
+
+  private int formatIndex() {
+    switch (format) {
+      case "BRACES":
+        return 1;
+      case "TABS":
+        return 2;
+      case "INLINE":
+        return 3;
+      case "LOWERCASE":
+        return 4;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Parses a full completion.
+   *
+   * @return the parsed challenges.
+   */
+  @Benchmark
+  public Set<Challenge> parseText() {
+    return parser.parseText(completion);
+  }
+
+  /**
+   * Classifies every line of the corpus.
+   *
+   * @param blackhole the {@link Blackhole}.
+   */
+  @Benchmark
+  public void evaluate(Blackhole blackhole) {
+    for (String line : lines) {
+      blackhole.consume(ChallengePattern.evaluate(line));
+    }
+  }
+
+  /**
+   * Splits every option line of the corpus.
+   *
+   * @param blackhole the {@link Blackhole}.
+   */
+  @Benchmark
+  public void evaluateOptions(Blackhole blackhole) {
+    for (String line : optionLines) {
+      AbstractChallenge challenge = new AbstractChallenge();
+      challenge.selectAbstraction(ChallengePattern.OPTIONS, line);
+      blackhole.consume(challenge);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.smilebat.learntribe.openai.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Realistic open ai completion texts covering the formats seen in production.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+final class CompletionCorpus {
+
+  /** Numbered questions, dotted options on their own lines. */
+  static final String STANDARD =
+      "\n\n1. What is the most important feature of Java?\n\na. Platform independent\nb. "
+          + "Object oriented\nc. Simple\nd. Secure\n\nAnswer: a. Platform independent\n\n"
+          + "2. What is the default value of a local variable?\n\na. 0\nb. null\nc. "
+          + "Compile time error\nd. Runtime error\n\nAnswer: c. Compile time error\n\n"
+          + "3. Which of the following is not a keyword in java?\n\na. native\nb. volatile\n"
+          + "c. public\nd. strictfp\n\nAnswer: a. native";
+
+  /** Options and answers using braces. */
+  static final String BRACES =
+      "\n\n1. What is the purpose of ReactJs? \nA) To create interactive user interfaces\n"
+          + "B) To create dynamic webpages\nC) To create mobile applications\n"
+          + "D) To create server-side applications \nAnswer: A) To create interactive user "
+          + "interfaces\n\n2. What type of data does ReactJs use to store information? \nA) XML \n"
+          + "B) HTML \nC) JSON \nD) JavaScript \nAnswer: C) JSON \n\n3. What is a component in "
+          + "ReactJs? \nA) An object that contains HTML, CSS, and JavaScript code \nB) A function "
+          + "that returns a React element \nC) A class that extends the React component class \n"
+          + "D) A library of pre-defined functions and classes \nAnswer: B) A function that "
+          + "returns a React element";
+
+  /** Inline options separated by tabs. */
+  static final String TABS =
+      "\n\n1. What is the syntax for a ReactJs component?\nA. const myComponent = () => {} "
+          + "\t\t\t\tB. class MyComponent extends Component {} \t\t\tC. function MyComponent() {} "
+          + "\t\t\tD. React.createClass({})\nAnswer: B. class MyComponent extends Component {}\n\n"
+          + "2. What is the purpose of the render() method in ReactJs?\nA. To provide a template "
+          + "for the component's output \tB. To define the component's initial state \tC. To "
+          + "create an instance of the component \tD. To define the component's props\nAnswer: A. "
+          + "To provide a template for the component's output\n\n3. How do you pass data from a "
+          + "parent component to a child component?\nA. Through props \tB. Through state \tC. "
+          + "Through variables \tD. Through events\nAnswer: A. Through props";
+
+  /** Inline options separated by spaces. */
+  static final String INLINE =
+      "\n\n1. What is the most common way to create a React component?\nA. Using a class   B. "
+          + "Using a function  C. Using a hook  D. Using a variable\nAnswer: B. Using a function\n\n"
+          + "2. What is the correct syntax for importing an external CSS file in React?\nA. "
+          + "@import url('style.css');   B. import style from 'style.css';  C. import 'style.css';"
+          + "  D. require('style.css');\nAnswer: C. import 'style.css';\n\n3. What is the purpose "
+          + "of using the useState() hook in React?\nA. To manage data in a global state   B. To "
+          + "manage data in a local state  C. To manage data in a shared state  D. To manage data "
+          + "in an immutable state\nAnswer: B. To manage data in a local state";
+
+  /** Lower case options, indented lines. */
+  static final String LOWERCASE =
+      "\n\n1. What is the purpose of the ReactJs componentDidMount() lifecycle method?\n  a. To "
+          + "initialize state\n  b. To render components\n  c. To fetch data from an API\n  d. To "
+          + "update the DOM when state changes\n  Answer: C. To fetch data from an API\n  \n2. "
+          + "Which of the following is NOT a valid way to define a ReactJs component?\n  a. As a "
+          + "function\n  b. As an ES6 class\n  c. As an HTML tag\n  d. As an object literal\n  "
+          + "Answer: C. As an HTML tag\n  \n3. How can you access props in a ReactJs component?\n"
+          + "  a. By using the this keyword and dot notation\n  b. By using the props keyword and "
+          + "dot notation\n  c. By using the getProps() function call\n  d. By using the this "
+          + "keyword and bracket notation\n  Answer: B. By using the props keyword and dot notation";
+
+  /** A profile summary completion. */
+  static final String SUMMARY =
+      "\n\n1. Results-driven Java Developer with 5+ years of experience designing, building and "
+          + "maintaining scalable microservices with Spring Boot and Kafka.\n\n2. Detail oriented "
+          + "Java Developer skilled in building RESTful APIs, optimising SQL queries and mentoring "
+          + "junior engineers in agile teams.";
+
+  static final List<String> CHALLENGES = Arrays.asList(STANDARD, BRACES, TABS, INLINE, LOWERCASE);
+
+  private CompletionCorpus() {}
+
+  /**
+   * Returns the trimmed, non blank lines of all challenge completions.
+   *
+   * @return the lines.
+   */
+  static List<String> challengeLines() {
+    List<String> lines = new ArrayList<>();
+    for (String text : CHALLENGES) {
+      for (String line : text.split("\n")) {
+        if (!line.isBlank()) {
+          lines.add(line.trim());
+        }
+      }
+    }
+    return lines;
+  }
+}
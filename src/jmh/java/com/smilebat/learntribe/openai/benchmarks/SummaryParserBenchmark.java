@@ -0,0 +1,42 @@
+package com.smilebat.learntribe.openai.benchmarks;
+
+import com.smilebat.learntribe.openai.services.helpers.SummaryParser;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for profile summary parsing.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummaryParserBenchmark {
+
+  private final SummaryParser parser = new SummaryParser();
+
+  /**
+   * Parses a summary completion.
+   *
+   * @return the parsed summaries.
+   */
+  @Benchmark
+  public Set<String> parseText() {
+    return parser.parseText(CompletionCorpus.SUMMARY);
+  }
+}
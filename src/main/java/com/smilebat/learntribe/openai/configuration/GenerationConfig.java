@@ -0,0 +1,147 @@
+package com.smilebat.learntribe.openai.configuration;
+
+import com.smilebat.learntribe.openai.services.CompletionGovernor;
+import com.smilebat.learntribe.openai.services.PriorityScheduler;
+import com.smilebat.learntribe.openai.services.WorkClass;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Configuration of the worker pools used for open ai generation.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Configuration
+@Slf4j
+@SuppressFBWarnings(justification = "Generated code")
+public class GenerationConfig {
+
+  public static final String GENERATION_EXECUTOR = "generationExecutor";
+
+  public static final String OPENAI_EXECUTOR = "openAiExecutor";
+
+  @Value("${feature.generation.workers:8}")
+  private int workers;
+
+  @Value("${feature.governor.maxlimit:32}")
+  private int openAiThreads;
+
+  @Value("${feature.skills.parallelism:4}")
+  private int skillParallelism;
+
+  @Value("${feature.scheduler.weights.assessment:6}")
+  private int assessmentWeight;
+
+  @Value("${feature.scheduler.weights.summary:3}")
+  private int summaryWeight;
+
+  @Value("${feature.scheduler.weights.refill:1}")
+  private int refillWeight;
+
+  @Value("${feature.generation.virtualthreads:false}")
+  private boolean virtualThreads;
+
+  @Value("${feature.scheduling.poolsize:4}")
+  private int schedulingPoolSize;
+
+  /**
+   * Executor issuing the open ai completion calls.
+   *
+   * <p>Uses virtual threads when enabled and offered by the runtime, otherwise a fixed pool of
+   * daemon workers. Parallelism per job is bounded by the callers.
+   *
+   * @return the {@link ExecutorService}.
+   */
+  @Bean(name = GENERATION_EXECUTOR, destroyMethod = "shutdown")
+  public ExecutorService generationExecutor() {
+    return newExecutor(workers, "openai-gen-");
+  }
+
+  /**
+   * Executor running the blocking feign calls to open ai.
+   *
+   * <p>Generation workers wait in the {@link CompletionGovernor} for a slot, and only a finished
+   * call frees one. The calls therefore never queue behind the generation workers, and one thread
+   * per {@code feature.governor.maxlimit} slot means a call holding a slot never waits for a
+   * thread.
+   *
+   * @return the {@link ExecutorService}.
+   */
+  @Bean(name = OPENAI_EXECUTOR, destroyMethod = "shutdown")
+  public ExecutorService openAiExecutor() {
+    return newExecutor(openAiThreads, "openai-io-");
+  }
+
+  /**
+   * Scheduler processing skills and summaries, its workers are the global cap on jobs generated at
+   * once and are shared between the {@link WorkClass}es by {@code feature.scheduler.weights}.
+   *
+   * @param registry the {@link MeterRegistry}.
+   * @return the {@link PriorityScheduler}.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public PriorityScheduler priorityScheduler(MeterRegistry registry) {
+    final Map<WorkClass, Integer> weights = new EnumMap<>(WorkClass.class);
+    weights.put(WorkClass.ASSESSMENT, assessmentWeight);
+    weights.put(WorkClass.SUMMARY, summaryWeight);
+    weights.put(WorkClass.REFILL, refillWeight);
+    return new PriorityScheduler(
+        skillParallelism, weights, registry, namedThreadFactory("openai-skill-"));
+  }
+
+  /**
+   * Scheduler running the {@code @Scheduled} jobs on {@code feature.scheduling.poolsize} threads,
+   * so that the write behind flush does not wait behind the inventory reconcile or the refills.
+   *
+   * @return the {@link ThreadPoolTaskScheduler}.
+   */
+  @Bean
+  public ThreadPoolTaskScheduler taskScheduler() {
+    final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(schedulingPoolSize);
+    scheduler.setThreadNamePrefix("openai-scheduling-");
+    return scheduler;
+  }
+
+  private ExecutorService newExecutor(int threads, String prefix) {
+    if (virtualThreads) {
+      try {
+        Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        log.info("Using virtual threads for {}", prefix);
+        return (ExecutorService) method.invoke(null);
+      } catch (ReflectiveOperationException ex) {
+        log.info("Virtual threads not available, falling back to {} workers", threads);
+      }
+    }
+    return Executors.newFixedThreadPool(threads, namedThreadFactory(prefix));
+  }
+
+  /**
+   * Creates a daemon thread factory with the given name prefix.
+   *
+   * @param prefix the thread name prefix.
+   * @return the {@link ThreadFactory}.
+   */
+  static ThreadFactory namedThreadFactory(String prefix) {
+    final AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
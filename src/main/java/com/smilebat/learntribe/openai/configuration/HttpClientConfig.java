@@ -0,0 +1,102 @@
+package com.smilebat.learntribe.openai.configuration;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpMetricsEventListener;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the outbound http client used by the feign clients, enabled with {@code
+ * feign.okhttp.enabled}.
+ *
+ * <p>Connections are pooled and kept alive for {@code feign.okhttp.keepalive} seconds, so that
+ * consecutive calls to the same host skip the TCP and TLS handshakes. HTTP/2 is negotiated with
+ * hosts offering it over TLS, calls to the same host are then multiplexed on one connection.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Configuration
+@Slf4j
+@SuppressFBWarnings(justification = "Generated code")
+@ConditionalOnProperty(name = "feign.okhttp.enabled", havingValue = "true")
+public class HttpClientConfig {
+
+  private static final String POOL_NAME = "feign";
+
+  @Value("${feign.okhttp.maxidle:50}")
+  private int maxIdleConnections;
+
+  @Value("${feign.okhttp.keepalive:300}")
+  private long keepAlive;
+
+  @Value("${feign.okhttp.timeout.connect:10000}")
+  private long connectTimeout;
+
+  @Value("${feign.okhttp.timeout.read:60000}")
+  private long readTimeout;
+
+  /**
+   * Pool of the outbound connections.
+   *
+   * @return the {@link ConnectionPool}.
+   */
+  @Bean
+  public ConnectionPool httpConnectionPool() {
+    return new ConnectionPool(maxIdleConnections, keepAlive, TimeUnit.SECONDS);
+  }
+
+  /**
+   * The client executing the feign calls. Feign applies the timeouts of {@code
+   * feign.client.config} per call, the timeouts here apply to anything else using the client. The
+   * {@code uri} tag of {@code okhttp.requests} holds the host called rather than the raw path,
+   * which would start a new series for every distinct path.
+   *
+   * @param connectionPool the {@link ConnectionPool}.
+   * @param registry the {@link MeterRegistry}.
+   * @return the {@link OkHttpClient}.
+   */
+  @Bean
+  public OkHttpClient okHttpClient(ConnectionPool connectionPool, MeterRegistry registry) {
+    log.info(
+        "Outbound http pool of {} idle connections kept alive for {}s",
+        maxIdleConnections,
+        keepAlive);
+    return new OkHttpClient.Builder()
+        .connectionPool(connectionPool)
+        .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+        .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+        .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+        .retryOnConnectionFailure(true)
+        .eventListener(
+            OkHttpMetricsEventListener.builder(registry, "okhttp.requests")
+                .uriMapper(request -> request.url().host())
+                .tags(Tags.of("client", POOL_NAME))
+                .build())
+        .build();
+  }
+
+  /**
+   * Exports the size of the connection pool as {@code okhttp.pool.*}.
+   *
+   * @param connectionPool the {@link ConnectionPool}.
+   * @return the {@link OkHttpConnectionPoolMetrics}.
+   */
+  @Bean
+  public OkHttpConnectionPoolMetrics httpConnectionPoolMetrics(ConnectionPool connectionPool) {
+    return new OkHttpConnectionPoolMetrics(
+        connectionPool, "okhttp.pool", Tags.of("client", POOL_NAME), maxIdleConnections);
+  }
+}
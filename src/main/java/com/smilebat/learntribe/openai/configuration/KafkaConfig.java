@@ -1,8 +1,12 @@
 package com.smilebat.learntribe.openai.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smilebat.learntribe.openai.kafka.KafkaPayloadConverter;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.HashMap;
 import java.util.Map;
+import lombok.RequiredArgsConstructor;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -16,7 +20,10 @@ import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties.AckMode;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
@@ -30,16 +37,35 @@ import org.springframework.kafka.support.serializer.JsonSerializer;
 @Configuration
 @EnableKafka
 @SuppressFBWarnings(justification = "Generated code")
+@RequiredArgsConstructor
 public class KafkaConfig {
 
+  private final ObjectMapper mapper;
+
+  private final MeterRegistry registry;
+
   @Value("${kafka.server.url}")
   private String kafkaLocalServerConfig;
 
   @Value("${kafka.groupid}")
   private String groupIdConfig = "sb-group-1";
 
+  @Value("${kafka.batch.maxrecords:100}")
+  private int batchMaxRecords;
+
+  @Value("${kafka.producer.linger:5}")
+  private int producerLinger;
+
+  @Value("${kafka.producer.batchsize:32768}")
+  private int producerBatchSize;
+
+  @Value("${kafka.producer.compression:lz4}")
+  private String producerCompression;
+
   /**
-   * Bean for producer factory.
+   * Bean for producer factory. Records are batched for {@code kafka.producer.linger} ms up to
+   * {@code kafka.producer.batchsize} bytes and compressed with {@code kafka.producer.compression}.
+   * The client metrics of the producers are bound to the meter registry.
    *
    * @return the {@link ProducerFactory}.
    */
@@ -49,8 +75,14 @@ public class KafkaConfig {
     configMap.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaLocalServerConfig);
     configMap.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
     configMap.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+    configMap.put(ProducerConfig.LINGER_MS_CONFIG, producerLinger);
+    configMap.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchSize);
+    configMap.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, producerCompression);
     configMap.put(JsonDeserializer.TRUSTED_PACKAGES, "com.smilebat.learntribe");
-    return new DefaultKafkaProducerFactory<String, Object>(configMap);
+    DefaultKafkaProducerFactory<String, Object> factory =
+        new DefaultKafkaProducerFactory<String, Object>(configMap);
+    factory.addListener(new MicrometerProducerListener<>(registry));
+    return factory;
   }
 
   /**
@@ -64,24 +96,58 @@ public class KafkaConfig {
   }
 
   /**
-   * Bean for Consumer Factory
+   * Bean for Consumer Factory. The client metrics of the consumers, including the records lag,
+   * are bound to the meter registry.
    *
    * @return the {@link ConsumerFactory}
    */
   @Bean
   public ConsumerFactory<String, String> consumerFactory() {
+    return withMetrics(new DefaultKafkaConsumerFactory<>(getConsumerConfig()));
+  }
+
+  /**
+   * Bean for the Consumer Factory of batch listeners, polls up to {@code kafka.batch.maxrecords}
+   * records at once.
+   *
+   * @return the {@link ConsumerFactory}
+   */
+  @Bean
+  public ConsumerFactory<String, String> batchConsumerFactory() {
+    Map<String, Object> configMap = getConsumerConfig();
+    configMap.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxRecords);
+    return withMetrics(new DefaultKafkaConsumerFactory<>(configMap));
+  }
+
+  private ConsumerFactory<String, String> withMetrics(
+      DefaultKafkaConsumerFactory<String, String> factory) {
+    factory.addListener(new MicrometerConsumerListener<>(registry));
+    return factory;
+  }
+
+  private Map<String, Object> getConsumerConfig() {
     Map<String, Object> configMap = new HashMap<>();
     configMap.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaLocalServerConfig);
     configMap.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-    configMap.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+    configMap.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
     configMap.put(ConsumerConfig.GROUP_ID_CONFIG, groupIdConfig);
     configMap.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 3000000);
-    configMap.put(JsonDeserializer.TRUSTED_PACKAGES, "com.smilebat.learntribe");
-    return new DefaultKafkaConsumerFactory<>(configMap);
+    return configMap;
   }
 
   /**
-   * Bean for Kafka Listner config.
+   * Bean for the listener payload converter. Record values are plain JSON text, converted once to
+   * the listener payload type.
+   *
+   * @return the {@link KafkaPayloadConverter}.
+   */
+  @Bean
+  public KafkaPayloadConverter payloadConverter() {
+    return new KafkaPayloadConverter(mapper);
+  }
+
+  /**
+   * Bean for Kafka Listner config. Listener invocations are timed as {@code spring.kafka.listener}.
    *
    * @return the {@link ConcurrentKafkaListenerContainerFactory}.
    */
@@ -90,6 +156,27 @@ public class KafkaConfig {
     ConcurrentKafkaListenerContainerFactory<String, String> factory =
         new ConcurrentKafkaListenerContainerFactory<String, String>();
     factory.setConsumerFactory(consumerFactory());
+    factory.setMessageConverter(payloadConverter());
+    factory.getContainerProperties().setMicrometerEnabled(true);
+    return factory;
+  }
+
+  /**
+   * Bean for the batch Kafka Listener config. Offsets are committed once per batch. Batch
+   * listeners receive the raw records and convert them one by one, so that an unreadable record
+   * can be skipped.
+   *
+   * @return the {@link ConcurrentKafkaListenerContainerFactory}.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, String>
+      batchKafkaListenerContainerFactory() {
+    ConcurrentKafkaListenerContainerFactory<String, String> factory =
+        new ConcurrentKafkaListenerContainerFactory<String, String>();
+    factory.setConsumerFactory(batchConsumerFactory());
+    factory.setBatchListener(true);
+    factory.getContainerProperties().setAckMode(AckMode.BATCH);
+    factory.getContainerProperties().setMicrometerEnabled(true);
     return factory;
   }
 }
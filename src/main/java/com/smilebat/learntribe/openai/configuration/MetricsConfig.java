@@ -0,0 +1,56 @@
+package com.smilebat.learntribe.openai.configuration;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilter;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the metrics exported through actuator.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Configuration
+@Slf4j
+@SuppressFBWarnings(justification = "Generated code")
+public class MetricsConfig {
+
+  public static final String SKILL_TAG = "skill";
+
+  public static final String OTHER_SKILL = "other";
+
+  @Value("${feature.metrics.maxskills:100}")
+  private int maxSkills;
+
+  /**
+   * Guards the cardinality of the {@code skill} tag. The first {@code feature.metrics.maxskills}
+   * skills keep their own series, meters of any further skill are recorded under {@code other}.
+   *
+   * @return the {@link MeterFilter}.
+   */
+  @Bean
+  public MeterFilter skillCardinalityFilter() {
+    final Set<String> skills = ConcurrentHashMap.newKeySet();
+    return new MeterFilter() {
+      @Override
+      public Meter.Id map(Meter.Id id) {
+        final String skill = id.getTag(SKILL_TAG);
+        if (skill == null || skills.contains(skill)) {
+          return id;
+        }
+        if (skills.size() < maxSkills && skills.add(skill)) {
+          return id;
+        }
+        return id.replaceTags(Tags.of(id.getTags()).and(SKILL_TAG, OTHER_SKILL));
+      }
+    };
+  }
+}
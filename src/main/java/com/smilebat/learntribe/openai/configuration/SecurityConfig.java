@@ -2,13 +2,24 @@ package com.smilebat.learntribe.openai.configuration;
 
 import com.google.common.collect.ImmutableList;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.JwtDecoders;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtIssuerAuthenticationManagerResolver;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
@@ -26,14 +37,28 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 @SuppressFBWarnings(justification = "Generated code")
 public class SecurityConfig {
 
+  /** Realm role of the users allowed to administer the processor. */
+  public static final String ADMIN_ROLE = "admin";
+
+  private static final String REALM_ACCESS = "realm_access";
+
+  private static final String ROLES = "roles";
+
   @Value("${feign.client.url.keycloak}")
   private String keyCloakBaseUrl;
 
   @Bean
   protected SecurityFilterChain configure(HttpSecurity security) throws Exception {
 
+    final String issuer = keyCloakBaseUrl + "/realms/master";
+    final Map<String, AuthenticationManager> authenticationManagers = new ConcurrentHashMap<>();
     JwtIssuerAuthenticationManagerResolver authenticationManagerResolver =
-        new JwtIssuerAuthenticationManagerResolver(keyCloakBaseUrl + "/realms/master");
+        new JwtIssuerAuthenticationManagerResolver(
+            tokenIssuer ->
+                issuer.equals(tokenIssuer)
+                    ? authenticationManagers.computeIfAbsent(
+                        tokenIssuer, SecurityConfig::authenticationManager)
+                    : null);
 
     security
         .cors()
@@ -60,6 +85,33 @@ public class SecurityConfig {
     return security.build();
   }
 
+  /**
+   * Authenticates the tokens of the issuer. The realm roles of a token are granted as {@code
+   * ROLE_} authorities next to its scopes.
+   *
+   * @param issuer the issuer.
+   * @return the {@link AuthenticationManager}.
+   */
+  private static AuthenticationManager authenticationManager(String issuer) {
+    final JwtGrantedAuthoritiesConverter scopes = new JwtGrantedAuthoritiesConverter();
+    final JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+    converter.setJwtGrantedAuthoritiesConverter(
+        jwt -> {
+          final Collection<GrantedAuthority> authorities = new ArrayList<>(scopes.convert(jwt));
+          final Map<String, Object> realmAccess = jwt.getClaimAsMap(REALM_ACCESS);
+          if (realmAccess != null && realmAccess.get(ROLES) instanceof Collection) {
+            for (Object role : (Collection<?>) realmAccess.get(ROLES)) {
+              authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+            }
+          }
+          return authorities;
+        });
+    final JwtAuthenticationProvider provider =
+        new JwtAuthenticationProvider(JwtDecoders.fromIssuerLocation(issuer));
+    provider.setJwtAuthenticationConverter(converter);
+    return provider::authenticate;
+  }
+
   /**
    * Custom cors configuration.
    *
@@ -1,20 +1,29 @@
 package com.smilebat.learntribe.openai.controllers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smilebat.learntribe.assessment.AssessmentRequest;
 import com.smilebat.learntribe.assessment.response.AssessmentResponse;
 import com.smilebat.learntribe.kafka.KafkaSkillsRequest;
+import com.smilebat.learntribe.openai.configuration.SecurityConfig;
 import com.smilebat.learntribe.openai.kafka.KafkaProducer;
+import com.smilebat.learntribe.openai.services.BulkJobStatus;
+import com.smilebat.learntribe.openai.services.SkillProgressTracker;
 import io.swagger.annotations.ApiImplicitParam;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -37,7 +46,13 @@ public class OpenAiController {
 
   private final KafkaProducer producer;
 
-  private final ObjectMapper mapper;
+  private final SkillProgressTracker progressTracker;
+
+  @Value("${kafka.topic.in.ast}")
+  private String inTopicAst;
+
+  @Value("${feature.bulk.maxrequests:500}")
+  private int maxBulkRequests;
 
   private static final String SUBJECT = "subject";
   private static final String BAD_REQUEST = "subject";
@@ -45,10 +60,14 @@ public class OpenAiController {
   private static final String UN_AUTHORIZED = "Un-Authorized";
   private static final String URL_NOT_FOUND = "Url Not found";
   private static final String INVALID_DATA = "Invalid Data";
+  private static final String UNAVAILABLE = "Unable to queue the request";
+  private static final String TOO_LARGE = "Too many requests in the job";
 
   /**
    * Creates bulk set of challenges.
    *
+   * <p>Responds once the broker acknowledged the request, with 503 if it could not be sent.
+   *
    * @param keyCloakId the IAM user id.
    * @param request the {@link AssessmentRequest}.
    * @return the {@link AssessmentResponse}.
@@ -66,6 +85,7 @@ public class OpenAiController {
         @ApiResponse(code = 403, message = FORBIDDEN),
         @ApiResponse(code = 404, message = URL_NOT_FOUND),
         @ApiResponse(code = 422, message = INVALID_DATA),
+        @ApiResponse(code = 503, message = UNAVAILABLE),
       })
   @ApiImplicitParam(
       name = "Authorization",
@@ -75,11 +95,122 @@ public class OpenAiController {
       paramType = "header",
       dataTypeClass = String.class,
       example = "Bearer access_token")
-  public ResponseEntity<Boolean> postEvent(
+  public CompletableFuture<ResponseEntity<Boolean>> postEvent(
+      @AuthenticationPrincipal(expression = SUBJECT) String keyCloakId,
+      @RequestBody KafkaSkillsRequest request) {
+    final CompletableFuture<?> sent;
+    try {
+      sent = producer.sendAsync(request);
+    } catch (RuntimeException ex) {
+      return CompletableFuture.completedFuture(
+          ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+    return sent.<ResponseEntity<Boolean>>handle(
+        (result, ex) ->
+            ex == null
+                ? ResponseEntity.ok().build()
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+  }
+
+  /**
+   * Submits a bulk job generating the challenges of many skill requests.
+   *
+   * <p>Only admins may submit jobs, of at most {@code feature.bulk.maxrequests} requests. The
+   * requests are published to the assessment topic in one producer batch, each carrying the job id.
+   * The progress of the job is available from {@link #getBulkStatus(String, String)}.
+   *
+   * @param keyCloakId the IAM user id.
+   * @param requests the list of {@link KafkaSkillsRequest}.
+   * @return the {@link BulkJobStatus} of the submitted job.
+   */
+  @PostMapping(value = "/bulk")
+  @ResponseBody
+  @ApiOperation(
+      value = "Bulk Challenge Creation",
+      notes = "Queues the generation of challenges for many skill requests")
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 202, message = "Successfully queued"),
+        @ApiResponse(code = 400, message = BAD_REQUEST),
+        @ApiResponse(code = 401, message = UN_AUTHORIZED),
+        @ApiResponse(code = 403, message = FORBIDDEN),
+        @ApiResponse(code = 404, message = URL_NOT_FOUND),
+        @ApiResponse(code = 413, message = TOO_LARGE),
+        @ApiResponse(code = 422, message = INVALID_DATA),
+      })
+  @ApiImplicitParam(
+      name = "Authorization",
+      value = "Access Token",
+      required = true,
+      allowEmptyValue = false,
+      paramType = "header",
+      dataTypeClass = String.class,
+      example = "Bearer access_token")
+  @PreAuthorize("hasRole('" + SecurityConfig.ADMIN_ROLE + "')")
+  public ResponseEntity<BulkJobStatus> postBulkEvent(
+      @AuthenticationPrincipal(expression = SUBJECT) String keyCloakId,
+      @RequestBody List<KafkaSkillsRequest> requests) {
+    if (requests == null
+        || requests.isEmpty()
+        || requests.stream().anyMatch(request -> request.getSkills() == null)) {
+      return ResponseEntity.badRequest().build();
+    }
+    if (requests.size() > maxBulkRequests) {
+      return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+    final String jobId = progressTracker.createJob(requests);
+    for (KafkaSkillsRequest request : requests) {
+      try {
+        producer
+            .sendAsync(inTopicAst, request, jobId)
+            .whenComplete(
+                (result, ex) -> {
+                  if (ex != null) {
+                    request.getSkills().forEach(skill -> progressTracker.failed(jobId, skill));
+                  }
+                });
+      } catch (RuntimeException ex) {
+        request.getSkills().forEach(skill -> progressTracker.failed(jobId, skill));
+      }
+    }
+    producer.flush();
+    log.info("Published bulk job {} with {} requests", jobId, requests.size());
+    return ResponseEntity.accepted()
+        .location(URI.create("/api/openai/bulk/" + jobId))
+        .body(progressTracker.getStatus(jobId).orElseThrow());
+  }
+
+  /**
+   * Reports the progress of a bulk job.
+   *
+   * @param keyCloakId the IAM user id.
+   * @param jobId the job id.
+   * @return the {@link BulkJobStatus}.
+   */
+  @GetMapping(value = "/bulk/{jobId}")
+  @ResponseBody
+  @ApiOperation(value = "Bulk Job Status", notes = "Reports the progress of every skill of the job")
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "Successfully retrieved"),
+        @ApiResponse(code = 401, message = UN_AUTHORIZED),
+        @ApiResponse(code = 403, message = FORBIDDEN),
+        @ApiResponse(code = 404, message = URL_NOT_FOUND),
+      })
+  @ApiImplicitParam(
+      name = "Authorization",
+      value = "Access Token",
+      required = true,
+      allowEmptyValue = false,
+      paramType = "header",
+      dataTypeClass = String.class,
+      example = "Bearer access_token")
+  public ResponseEntity<BulkJobStatus> getBulkStatus(
       @AuthenticationPrincipal(expression = SUBJECT) String keyCloakId,
-      @RequestBody KafkaSkillsRequest request)
-      throws JsonProcessingException {
-    producer.sendMessage(mapper.writeValueAsString(request));
-    return ResponseEntity.ok().build();
+      @PathVariable String jobId) {
+    return progressTracker
+        .getStatus(jobId)
+        .map(ResponseEntity::ok)
+        .orElseGet(() -> ResponseEntity.notFound().build());
   }
 }
@@ -1,20 +1,29 @@
 package com.smilebat.learntribe.openai.kafka;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smilebat.learntribe.kafka.KafkaProfileRequest;
 import com.smilebat.learntribe.kafka.KafkaSkillsRequest;
 import com.smilebat.learntribe.openai.services.ChallengeStore;
 import com.smilebat.learntribe.openai.services.SummaryFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
 /**
  * Kafka Consumer for the receiving notifications.
  *
+ * <p>Record values are converted to the listener payload types by the {@link
+ * KafkaPayloadConverter}. Requests of a bulk job carry the job id in the {@link
+ * KafkaProducer#BULK_JOB_HEADER} header.
+ *
  * <p>Copyright &copy; 2022 Smile .Bat
  *
  * @author Pai,Sai Nandan
@@ -26,12 +35,17 @@ public class KafkaConsumer {
 
   public static final String KAFKA_LISTENER_CONTAINER_FACTORY = "kafkaListenerContainerFactory";
 
-  private final ObjectMapper mapper;
+  public static final String BATCH_KAFKA_LISTENER_CONTAINER_FACTORY =
+      "batchKafkaListenerContainerFactory";
+
+  private static final String BATCH_ENABLED = "${kafka.batch.enabled:false}";
 
   private final ChallengeStore challengeStore;
 
   private final SummaryFactory summaryFactory;
 
+  private final KafkaPayloadConverter payloadConverter;
+
   @Value("${kafka.groupid}")
   private final String groupId = "sb-group-1";
 
@@ -42,38 +56,90 @@ public class KafkaConsumer {
   private final String inTopicSum = "summaries-store-event-1";
 
   /**
-   * Listener for receiving messages from Kafka Topic
+   * Listener for receiving messages from Kafka Topic. Disabled in batch mode.
    *
-   * @param message the message
-   * @throws JsonProcessingException on failing to read.
+   * @param request the {@link KafkaSkillsRequest}
+   * @param jobId the bulk job id, absent outside a job.
    */
   @KafkaListener(
+      id = "assessments",
+      idIsGroup = false,
       groupId = groupId,
       topics = inTopicAst,
-      containerFactory = KAFKA_LISTENER_CONTAINER_FACTORY)
-  public void receivedMessage(String message) throws JsonProcessingException {
-    final KafkaSkillsRequest request = mapper.readValue(message, KafkaSkillsRequest.class);
+      containerFactory = KAFKA_LISTENER_CONTAINER_FACTORY,
+      autoStartup = "#{!" + BATCH_ENABLED + "}")
+  public void receivedMessage(
+      KafkaSkillsRequest request,
+      @Header(name = KafkaProducer.BULK_JOB_HEADER, required = false) byte[] jobId) {
     log.info("Json message received using Kafka listener {}", request.getSkills());
     try {
-      challengeStore.createAssessments(request);
+      challengeStore.createAssessments(request, decode(jobId));
     } catch (Exception ex) {
       log.info("Failed processing the Kafka Message for User Assessment:");
       throw new RuntimeException(ex);
     }
   }
 
+  /**
+   * Listener for receiving a poll's worth of messages from Kafka Topic, enabled with {@code
+   * kafka.batch.enabled}. Offsets are committed once the whole batch is processed. Records are
+   * converted one by one, unreadable records are logged and skipped so that they do not fail the
+   * whole batch.
+   *
+   * @param records the list of {@link ConsumerRecord}
+   */
+  @KafkaListener(
+      id = "assessmentsBatch",
+      idIsGroup = false,
+      groupId = groupId,
+      topics = inTopicAst,
+      containerFactory = BATCH_KAFKA_LISTENER_CONTAINER_FACTORY,
+      autoStartup = BATCH_ENABLED)
+  public void receivedMessages(List<ConsumerRecord<String, String>> records) {
+    final List<KafkaSkillsRequest> requests = new ArrayList<>(records.size());
+    final List<String> jobIds = new ArrayList<>(records.size());
+    for (ConsumerRecord<String, String> record : records) {
+      try {
+        final KafkaSkillsRequest request =
+            payloadConverter.convert(record, KafkaSkillsRequest.class);
+        if (request != null) {
+          requests.add(request);
+          jobIds.add(
+              decode(
+                  Optional.ofNullable(record.headers().lastHeader(KafkaProducer.BULK_JOB_HEADER))
+                      .map(header -> header.value())
+                      .orElse(null)));
+        }
+      } catch (ConversionException ex) {
+        log.info(
+            "Skipping unreadable Kafka Message for User Assessment at {}-{}@{}: {}",
+            record.topic(),
+            record.partition(),
+            record.offset(),
+            record.value());
+      }
+    }
+    log.info("Json batch of {} messages received using Kafka listener", records.size());
+    try {
+      challengeStore.createAssessments(requests, jobIds);
+    } catch (Exception ex) {
+      log.info("Failed processing the Kafka batch for User Assessment:");
+      throw new RuntimeException(ex);
+    }
+  }
+
   /**
    * Loads request from queue
    *
-   * @param message the message
-   * @throws JsonProcessingException on procesing failure.
+   * @param request the {@link KafkaProfileRequest}
    */
   @KafkaListener(
+      id = "summaries",
+      idIsGroup = false,
       groupId = groupId,
       topics = inTopicSum,
       containerFactory = KAFKA_LISTENER_CONTAINER_FACTORY)
-  public void getSummaries(String message) throws JsonProcessingException {
-    final KafkaProfileRequest request = mapper.readValue(message, KafkaProfileRequest.class);
+  public void getSummaries(KafkaProfileRequest request) {
     log.info("Json message received using Kafka listener: {}", request);
     try {
       summaryFactory.createSummaries(request);
@@ -82,4 +148,8 @@ public class KafkaConsumer {
       throw new RuntimeException(ex);
     }
   }
+
+  private static String decode(byte[] jobId) {
+    return jobId != null ? new String(jobId, StandardCharsets.UTF_8) : null;
+  }
 }
@@ -0,0 +1,69 @@
+package com.smilebat.learntribe.openai.kafka;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.support.KafkaNull;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.kafka.support.converter.MessagingMessageConverter;
+
+/**
+ * Converts raw JSON record values to the payload type of the listener method.
+ *
+ * <p>Values are decoded once. Values sent by producers that still encode the payload as a JSON
+ * string holding the JSON document are unwrapped first, so both formats are accepted during the
+ * migration.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@RequiredArgsConstructor
+public class KafkaPayloadConverter extends MessagingMessageConverter {
+
+  private final ObjectMapper mapper;
+
+  /**
+   * Converts the value of a single record, for listeners receiving raw records.
+   *
+   * @param record the {@link ConsumerRecord}.
+   * @param type the payload type.
+   * @param <T> the payload type.
+   * @return the payload, null if the record has no value.
+   * @throws ConversionException if the value is not readable.
+   */
+  public <T> T convert(ConsumerRecord<?, ?> record, Class<T> type) {
+    final Object value = extractAndConvertValue(record, type);
+    return value == KafkaNull.INSTANCE ? null : type.cast(value);
+  }
+
+  @Override
+  protected Object extractAndConvertValue(ConsumerRecord<?, ?> record, Type type) {
+    final Object value = record.value();
+    if (value == null) {
+      return KafkaNull.INSTANCE;
+    }
+    final JavaType javaType =
+        mapper.getTypeFactory().constructType(type != null ? type : Object.class);
+    try {
+      String json =
+          value instanceof byte[]
+              ? new String((byte[]) value, StandardCharsets.UTF_8)
+              : value.toString();
+      final boolean wrapped = json.stripLeading().startsWith("\"");
+      if (javaType.hasRawClass(String.class)) {
+        return wrapped ? mapper.readValue(json, String.class) : json;
+      }
+      if (wrapped) {
+        json = mapper.readValue(json, String.class);
+      }
+      return mapper.readValue(json, javaType);
+    } catch (IOException ex) {
+      throw new ConversionException("Failed to convert the record from JSON", ex);
+    }
+  }
+}
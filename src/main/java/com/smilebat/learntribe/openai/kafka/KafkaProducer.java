@@ -1,15 +1,35 @@
 package com.smilebat.learntribe.openai.kafka;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
 /**
  * Kafka Producer for the sending notifications.
  *
+ * <p>Payloads are serialized once by the value serializer. Topics listed in {@code
+ * kafka.legacytopics} still receive the payload as a JSON string, for consumers that have not
+ * migrated yet.
+ *
+ * <p>Sends are asynchronous. At most {@code kafka.producer.maxinflight} sends are pending at once,
+ * further sends wait up to {@code kafka.producer.blocktimeout} ms for a slot and fail otherwise.
+ * Messages of a bulk job carry the job id in the {@link #BULK_JOB_HEADER} header.
+ *
  * <p>Copyright &copy; 2022 Smile .Bat
  *
  * @author Pai,Sai Nandan
@@ -18,22 +38,136 @@ import org.springframework.stereotype.Component;
 @Slf4j
 @ToString
 public class KafkaProducer {
+
+  public static final String BULK_JOB_HEADER = "bulkJobId";
+
+  private static final String SEND_METRIC = "kafka.producer.send";
+
   @Autowired private KafkaTemplate<String, Object> kafkaTemplate;
 
+  @Autowired private MeterRegistry registry;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Value("${kafka.legacytopics:}")
+  private Set<String> legacyTopics;
+
   @Value("${kafka.topic.out}")
   private String outTopic;
 
+  @Value("${kafka.producer.maxinflight:1000}")
+  private int maxInFlight;
+
+  @Value("${kafka.producer.blocktimeout:5000}")
+  private long blockTimeout;
+
+  private Semaphore inFlight;
+
+  /** Initializes the in flight limit. */
+  @PostConstruct
+  public void init() {
+    inFlight = new Semaphore(maxInFlight);
+    registry.gauge(SEND_METRIC + ".inflight", inFlight, s -> maxInFlight - s.availablePermits());
+  }
+
   /**
    * Sends a notifcation to assessment service.
    *
    * @param message the message to be sent
    */
   public void sendMessage(String message) {
+    sendAsync(message);
+  }
+
+  /**
+   * Sends a notifcation to assessment service without waiting for the broker.
+   *
+   * @param message the message to be sent
+   * @return the {@link CompletableFuture} completed with the {@link SendResult}.
+   */
+  public CompletableFuture<SendResult<String, Object>> sendAsync(Object message) {
+    return sendAsync(outTopic, message);
+  }
+
+  /**
+   * Sends a message to the topic without waiting for the broker.
+   *
+   * @param topic the topic.
+   * @param message the message to be sent
+   * @return the {@link CompletableFuture} completed with the {@link SendResult}.
+   */
+  public CompletableFuture<SendResult<String, Object>> sendAsync(String topic, Object message) {
+    return sendAsync(topic, message, null);
+  }
+
+  /**
+   * Sends a message of a bulk job to the topic without waiting for the broker.
+   *
+   * @param topic the topic.
+   * @param message the message to be sent
+   * @param jobId the bulk job id, sent in the {@link #BULK_JOB_HEADER} header unless null.
+   * @return the {@link CompletableFuture} completed with the {@link SendResult}.
+   */
+  public CompletableFuture<SendResult<String, Object>> sendAsync(
+      String topic, Object message, String jobId) {
+    final ProducerRecord<String, Object> record =
+        new ProducerRecord<>(topic, encode(topic, message));
+    if (jobId != null) {
+      record.headers().add(BULK_JOB_HEADER, jobId.getBytes(StandardCharsets.UTF_8));
+    }
+    acquire(topic);
+    final Timer.Sample sample = Timer.start(registry);
+    final CompletableFuture<SendResult<String, Object>> future;
+    try {
+      future = kafkaTemplate.send(record).completable();
+    } catch (RuntimeException ex) {
+      inFlight.release();
+      record(sample, topic, ex);
+      log.info("Unable to send message {} to {}", message, topic);
+      throw ex;
+    }
+    return future.whenComplete(
+        (result, ex) -> {
+          inFlight.release();
+          record(sample, topic, ex);
+          if (ex != null) {
+            log.info("Unable to send message {} to {}", message, topic, ex);
+          }
+        });
+  }
+
+  /** Sends the records buffered by the producer immediately. */
+  public void flush() {
+    kafkaTemplate.flush();
+  }
+
+  private Object encode(String topic, Object message) {
+    if (message instanceof String || !legacyTopics.contains(topic)) {
+      return message;
+    }
     try {
-      kafkaTemplate.send(outTopic, message);
-    } catch (Exception e) {
-      log.info("Unable to send message {} to {}", message, outTopic);
-      throw new RuntimeException(e);
+      return mapper.writeValueAsString(message);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalArgumentException("Unable to encode message for " + topic, ex);
     }
   }
+
+  private void acquire(String topic) {
+    try {
+      if (!inFlight.tryAcquire(blockTimeout, TimeUnit.MILLISECONDS)) {
+        throw new IllegalStateException("Too many pending messages for " + topic);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while sending to " + topic, ex);
+    }
+  }
+
+  private void record(Timer.Sample sample, String topic, Throwable ex) {
+    sample.stop(
+        Timer.builder(SEND_METRIC)
+            .tag("topic", topic)
+            .tag("result", ex == null ? "success" : "failure")
+            .register(registry));
+  }
 }
@@ -0,0 +1,32 @@
+package com.smilebat.learntribe.openai.services;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Progress of a bulk job, per skill.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Builder
+@Getter
+public class BulkJobStatus {
+  private String jobId;
+  private int requests;
+  private boolean completed;
+  private int questions;
+  private List<SkillStatus> skills;
+
+  /** Progress of a single skill of the job. */
+  @Builder
+  @Getter
+  public static class SkillStatus {
+    private String skill;
+    private SkillState status;
+    /** Challenges stored for the skill since the job was submitted. */
+    private int questions;
+  }
+}
@@ -0,0 +1,163 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.smilebat.learntribe.dataaccess.jpa.entity.Challenge;
+import com.smilebat.learntribe.openai.configuration.MetricsConfig;
+import com.smilebat.learntribe.openai.services.helpers.MinHashIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Rejects generated challenges whose question nearly duplicates a stored one of the same skill.
+ *
+ * <p>Every skill has its own {@link MinHashIndex}, warmed from the stored questions of the skill
+ * the first time the skill is seen. At most {@code feature.dedupe.maxskills} indexes of {@code
+ * feature.dedupe.maxquestions} questions each are kept, the least recently used index is dropped
+ * and warmed again when its skill comes back. Retained and rejected questions are counted per
+ * skill by the {@code openai.challenge.dedupe} counter.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChallengeDeduplicator {
+
+  private static final String DEDUPE_METRIC = "openai.challenge.dedupe";
+
+  private static final String QUESTIONS_QUERY =
+      "select c.question from Challenge c where upper(trim(c.skill)) = :skill";
+
+  private final EntityManager entityManager;
+
+  private final MeterRegistry registry;
+
+  @Value("${feature.dedupe.enabled:true}")
+  private boolean enabled;
+
+  @Value("${feature.dedupe.threshold:0.8}")
+  private double threshold;
+
+  @Value("${feature.dedupe.maxskills:500}")
+  private long maxSkills;
+
+  @Value("${feature.dedupe.maxquestions:5000}")
+  private int maxQuestions;
+
+  private LoadingCache<String, MinHashIndex> indexes;
+
+  /** Creates the index cache, indexes are loaded by the first caller of their skill. */
+  @PostConstruct
+  public void init() {
+    indexes = CacheBuilder.newBuilder().maximumSize(maxSkills).build(CacheLoader.from(this::load));
+  }
+
+  /**
+   * Retains the challenges whose question is not a near duplicate, up to the limit.
+   *
+   * <p>Retained questions are indexed right away, so a later call rejects their duplicates too.
+   * Challenges that are not stored in the end are handed back with {@link #release(String,
+   * Collection)}.
+   *
+   * @param skill the skill.
+   * @param challenges the generated challenges.
+   * @param limit the maximum number of challenges to retain.
+   * @return the retained challenges.
+   */
+  public Set<Challenge> retainUnique(String skill, Collection<Challenge> challenges, int limit) {
+    final Set<Challenge> retained = new HashSet<>();
+    final String normalized = SkillInventory.normalize(skill);
+    if (!enabled) {
+      for (Challenge challenge : challenges) {
+        if (retained.size() >= limit) {
+          break;
+        }
+        retained.add(challenge);
+      }
+      record(normalized, "unique", retained.size());
+      return retained;
+    }
+    final MinHashIndex index = getIndex(normalized);
+    int duplicates = 0;
+    synchronized (index) {
+      for (Challenge challenge : challenges) {
+        if (retained.size() >= limit) {
+          break;
+        }
+        final String question = challenge.getQuestion();
+        if (question == null || index.add(question)) {
+          retained.add(challenge);
+        } else {
+          duplicates++;
+        }
+      }
+    }
+    record(normalized, "unique", retained.size());
+    record(normalized, "duplicate", duplicates);
+    if (duplicates > 0) {
+      log.info("Dropped {} duplicate challenges for {}", duplicates, skill);
+    }
+    return retained;
+  }
+
+  /**
+   * Removes the questions of challenges that were retained but not stored, so that they may be
+   * generated again.
+   *
+   * @param skill the skill.
+   * @param challenges the challenges.
+   */
+  public void release(String skill, Collection<Challenge> challenges) {
+    if (!enabled) {
+      return;
+    }
+    final MinHashIndex index = indexes.getIfPresent(SkillInventory.normalize(skill));
+    if (index == null) {
+      return;
+    }
+    synchronized (index) {
+      challenges
+          .stream()
+          .map(Challenge::getQuestion)
+          .filter(question -> question != null)
+          .forEach(index::remove);
+    }
+  }
+
+  private void record(String skill, String result, int count) {
+    if (count > 0) {
+      registry
+          .counter(DEDUPE_METRIC, MetricsConfig.SKILL_TAG, skill, "result", result)
+          .increment(count);
+    }
+  }
+
+  private MinHashIndex getIndex(String skill) {
+    return indexes.getUnchecked(skill);
+  }
+
+  private MinHashIndex load(String skill) {
+    final MinHashIndex index = new MinHashIndex(threshold, maxQuestions);
+    final List<String> questions =
+        entityManager
+            .createQuery(QUESTIONS_QUERY, String.class)
+            .setParameter("skill", skill)
+            .getResultList();
+    questions.stream().filter(question -> question != null).forEach(index::add);
+    log.info("Indexed {} of {} stored questions for {}", index.size(), questions.size(), skill);
+    return index;
+  }
+}
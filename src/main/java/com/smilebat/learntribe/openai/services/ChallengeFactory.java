@@ -1,21 +1,32 @@
 package com.smilebat.learntribe.openai.services;
 
-import com.google.common.base.Function;
 import com.google.common.base.Verify;
-import com.smilebat.learntribe.dataaccess.ChallengeRepository;
 import com.smilebat.learntribe.dataaccess.jpa.entity.Challenge;
 import com.smilebat.learntribe.enums.AssessmentDifficulty;
-import com.smilebat.learntribe.learntribeclients.openai.OpenAiService;
-import com.smilebat.learntribe.openai.OpenAiRequest;
-import com.smilebat.learntribe.openai.response.Choice;
-import com.smilebat.learntribe.openai.response.OpenAiResponse;
+import com.smilebat.learntribe.openai.configuration.GenerationConfig;
+import com.smilebat.learntribe.openai.services.helpers.ChallengeParserSession;
 import com.smilebat.learntribe.openai.services.helpers.LChallengeParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
@@ -30,19 +41,66 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class ChallengeFactory {
 
-  private final OpenAiService openAiService;
+  private static final String PARSE_METRIC = "openai.parse";
+
+  private final CompletionService completionService;
   private final LChallengeParser challengeParser;
 
-  private final ChallengeRepository challengeRepository;
+  private final WriteBehindStore writeBehindStore;
+
+  private final ChallengeDeduplicator deduplicator;
+
+  private final StreamingCompletionClient streamingClient;
+
+  private final GenerationBudgetPolicy budgetPolicy;
+
+  private final MeterRegistry registry;
+
+  @Qualifier(GenerationConfig.GENERATION_EXECUTOR)
+  private final ExecutorService generationExecutor;
+
+  @Value("${feature.generation.parallelism:4}")
+  private int parallelism;
 
-  private static final Function<ChallengeFactoryRequest, String> MCQ_PROMPT =
-      (request) ->
-          "Create 3 "
+  @Value("${feature.generation.maxpercall:5}")
+  private int maxPerCall;
+
+  @Value("${openai.maxtokens:1024}")
+  private int maxTokens;
+
+  @Value("${feature.generation.tokensperquestion:120}")
+  private int tokensPerQuestion;
+
+  @Value("${feature.generation.choices:1}")
+  private int choices;
+
+  @Value("${feature.generation.parallelparse:4}")
+  private int parallelParse;
+
+  @Value("${feature.generation.streaming:false}")
+  private boolean streaming;
+
+  private static final BiFunction<ChallengeFactoryRequest, Integer, String> MCQ_PROMPT =
+      (request, count) ->
+          "Create "
+              + count
+              + " "
               + request.getDifficulty()
               + " "
               + request.getSkill()
               + " questions with options and correct answers";
 
+  private static final BiFunction<ChallengeFactoryRequest, Integer, String> MCQ_FALLBACK_PROMPT =
+      (request, count) ->
+          "Create "
+              + count
+              + " "
+              + request.getDifficulty()
+              + " multiple choice questions about "
+              + request.getSkill()
+              + ". Number every question, put each of the options a, b, c and d on its own line"
+              + " and end every question with a line starting with \"Answer:\"";
+
   /** Request for challenge factory. */
   @Builder
   @Getter
@@ -53,42 +111,228 @@ public class ChallengeFactory {
     private int quantity;
   }
 
+  /** Outcome of a single open ai completion call, or part of it while it streams. */
+  @Getter
+  @RequiredArgsConstructor
+  private static class Completion {
+    private final int requested;
+    private final List<String> texts;
+    private final Set<Challenge> challenges;
+    private final Throwable failure;
+    private final boolean partial;
+  }
+
   /**
    * Creates challenges from open ai raw text.
    *
+   * <p>Every prompt asks for the questions still missing, at most {@code
+   * feature.generation.maxpercall} and no more than fit in {@code openai.maxtokens}, the limit the
+   * call sends. Each call requests {@code feature.generation.choices} choices of the prompt, all of
+   * which are parsed, in parallel from {@code feature.generation.parallelparse} choices on.
+   *
+   * <p>Up to {@code feature.generation.parallelism} completions are kept in flight at once, the
+   * questions they were asked for count as pending so that the calls together never ask for more
+   * than the requested quantity. Progress is counted in stored questions, near duplicates of
+   * stored questions and questions beyond the requested quantity are dropped. Completions handed
+   * back by earlier jobs of the same skill are used before calling open ai. Results still in
+   * flight once the quantity is reached are handed back to the {@link CompletionService}. A failed
+   * call is logged and replaced. Calls are awaited through the futures of the {@link
+   * CompletionClient}, a generation worker is only held while the {@link CompletionGovernor} holds
+   * a call back and while a completion is parsed.
+   *
+   * <p>Every job runs within a {@link GenerationBudget}. Once the parse yield drops the job
+   * switches to a more explicit prompt, once the budget is exhausted no further calls are started
+   * and the job ends with the reason recorded. Calls already in flight are still awaited and their
+   * questions stored, unless the deadline passes first.
+   *
+   * <p>With {@code feature.generation.streaming} completions are streamed instead, every question
+   * is stored as soon as its answer arrives and the streams still open are closed once the
+   * quantity is reached.
+   *
    * @param factoryRequest the {@link ChallengeFactoryRequest}.
    */
   public void createChallenges(ChallengeFactoryRequest factoryRequest) {
     Verify.verifyNotNull(factoryRequest, "Factory request cannot be null");
     final int quantity = factoryRequest.getQuantity();
+    final int perCall = getQuestionsPerCall();
+    final String key = getJobKey(factoryRequest);
+    final BlockingQueue<Completion> completed = new LinkedBlockingQueue<>();
+    final AtomicBoolean done = new AtomicBoolean();
+    final GenerationBudget budget = budgetPolicy.newBudget(PromptType.MCQ);
     int challenges = 0;
+    int pending = 0;
+    int inFlight = 0;
     while (challenges < quantity) {
-      Set<Challenge> generatedChallenges = getOpenAiCompletions(MCQ_PROMPT.apply(factoryRequest));
+      while (inFlight < parallelism && challenges + pending < quantity && !budget.isExhausted()) {
+        final int missing = quantity - challenges - pending;
+        final int count = Math.min(perCall, (missing + choices - 1) / choices);
+        final int requested = count * choices;
+        final String prompt =
+            (budget.isEscalated() ? MCQ_FALLBACK_PROMPT : MCQ_PROMPT).apply(factoryRequest, count);
+        if (!budget.tryAttempt(
+            GenerationBudget.estimateTokens(prompt, requested * tokensPerQuestion))) {
+          break;
+        }
+        if (streaming) {
+          submitStream(prompt, requested, completed, done);
+        } else {
+          submit(prompt, key, requested, completed, done);
+        }
+        pending += requested;
+        inFlight++;
+      }
 
+      if (inFlight == 0) {
+        break;
+      }
+
+      final Completion completion;
+      try {
+        completion = completed.poll(budget.getRemainingNanos(), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        budget.exhaust("interrupted");
+        break;
+      }
+      if (completion == null) {
+        budget.exhaust("deadline");
+        break;
+      }
+      if (!completion.isPartial()) {
+        pending -= completion.getRequested();
+        inFlight--;
+      }
+
+      if (completion.getFailure() != null) {
+        budget.recordFailure();
+        log.info(
+            "Open ai completion failed for {}", factoryRequest.getSkill(), completion.getFailure());
+        continue;
+      }
+      if (!completion.isPartial() && !completion.getTexts().isEmpty()) {
+        budget.recordYield(completion.getRequested(), completion.getChallenges().size());
+      }
+
+      Set<Challenge> generatedChallenges =
+          deduplicator.retainUnique(
+              factoryRequest.getSkill(), completion.getChallenges(), quantity - challenges);
       if (!generatedChallenges.isEmpty()) {
         for (Challenge challenge : generatedChallenges) {
-          challenge.setSkill(factoryRequest.getSkill().trim().toUpperCase());
+          challenge.setSkill(SkillInventory.normalize(factoryRequest.getSkill()));
           challenge.setDifficulty(
               AssessmentDifficulty.getFromValue(factoryRequest.getDifficulty()));
         }
-        challengeRepository.saveAll(generatedChallenges);
-        challenges++;
+        writeBehindStore.addChallenges(factoryRequest.getSkill(), generatedChallenges);
+        challenges += generatedChallenges.size();
       }
     }
+    done.set(true);
+    final List<Completion> unused = new ArrayList<>();
+    completed.drainTo(unused);
+    unused
+        .stream()
+        .filter(completion -> completion.getFailure() == null)
+        .forEach(completion -> offerUnparsed(key, completion));
+    final String outcome = budget.finish(challenges >= quantity);
+    if (challenges < quantity) {
+      log.info(
+          "Abandoned challenge generation for {} with {} of {} questions ({})",
+          factoryRequest.getSkill(),
+          challenges,
+          quantity,
+          outcome);
+    }
   }
 
-  private Set<Challenge> getOpenAiCompletions(String prompt) {
-    log.info("Prompt: {}", prompt);
-    OpenAiRequest request = new OpenAiRequest();
-    request.setPrompt(prompt);
-    final OpenAiResponse completions = openAiService.getCompletions(request);
-    final List<Choice> choices = completions.getChoices();
-    if (choices == null || choices.isEmpty()) {
-      log.info("Unable to create open ai completion text");
-      throw new IllegalArgumentException();
+  private void submit(
+      String prompt,
+      String key,
+      int requested,
+      BlockingQueue<Completion> completed,
+      AtomicBoolean done) {
+    CompletableFuture.supplyAsync(() -> getOpenAiCompletions(prompt, key), generationExecutor)
+        .thenCompose(Function.identity())
+        .thenApplyAsync(
+            texts -> new Completion(requested, texts, parse(texts), null, false),
+            generationExecutor)
+        .whenComplete(
+            (result, ex) -> {
+              if (ex != null) {
+                completed.add(new Completion(requested, List.of(), Set.of(), ex, false));
+              } else if (done.get()) {
+                offerUnparsed(key, result);
+              } else {
+                completed.add(result);
+              }
+            });
+  }
+
+  private void submitStream(
+      String prompt, int requested, BlockingQueue<Completion> completed, AtomicBoolean done) {
+    CompletableFuture.runAsync(
+            () -> streamOpenAiCompletions(prompt, completed, done), generationExecutor)
+        .whenComplete(
+            (result, ex) ->
+                completed.add(new Completion(requested, List.of(), Set.of(), ex, false)));
+  }
+
+  private void streamOpenAiCompletions(
+      String prompt, BlockingQueue<Completion> completed, AtomicBoolean done) {
+    log.info("Streaming prompt: {}", prompt);
+    final List<ChallengeParserSession> sessions = new ArrayList<>(choices);
+    for (int i = 0; i < choices; i++) {
+      sessions.add(
+          challengeParser.newSession(
+              challenge ->
+                  !done.get()
+                      && completed.add(
+                          new Completion(0, List.of(), Set.of(challenge), null, true))));
+    }
+    final boolean finished =
+        streamingClient.stream(
+            prompt,
+            choices,
+            (index, text) -> index >= sessions.size() || sessions.get(index).accept(text));
+    if (finished) {
+      sessions.forEach(ChallengeParserSession::finish);
+    }
+  }
+
+  private int getQuestionsPerCall() {
+    final int fitting = maxTokens / Math.max(1, tokensPerQuestion);
+    return Math.max(1, Math.min(maxPerCall, fitting));
+  }
+
+  private static String getJobKey(ChallengeFactoryRequest factoryRequest) {
+    final String skill = SkillInventory.normalize(factoryRequest.getSkill());
+    return factoryRequest.getDifficulty() + ":" + skill;
+  }
+
+  private void offerUnparsed(String key, Completion completion) {
+    completion.getTexts().forEach(text -> completionService.offerUnparsed(key, text));
+  }
+
+  private CompletableFuture<List<String>> getOpenAiCompletions(String prompt, String key) {
+    final String unparsed = completionService.pollUnparsed(PromptType.MCQ, key);
+    if (unparsed != null) {
+      return CompletableFuture.completedFuture(List.of(unparsed));
     }
-    Choice choice = choices.get(0);
-    String completedText = choice.getText();
-    return challengeParser.parseText(completedText);
+    log.info("Prompt: {}", prompt);
+    final MultiChoiceRequest request = MultiChoiceRequest.of(prompt, choices);
+    request.setMaxTokens(maxTokens);
+    return completionService.completeAsync(PromptType.MCQ, request);
+  }
+
+  private Set<Challenge> parse(List<String> texts) {
+    final Stream<String> stream =
+        texts.size() >= parallelParse ? texts.parallelStream() : texts.stream();
+    return registry
+        .timer(PARSE_METRIC, "type", PromptType.MCQ.getType())
+        .record(
+            () ->
+                stream
+                    .map(challengeParser::parseText)
+                    .flatMap(Set::stream)
+                    .collect(Collectors.toCollection(HashSet::new)));
   }
 }
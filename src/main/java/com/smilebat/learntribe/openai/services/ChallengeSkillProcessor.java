@@ -0,0 +1,97 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.google.common.base.Verify;
+import com.smilebat.learntribe.enums.AssessmentDifficulty;
+import com.smilebat.learntribe.openai.services.ChallengeFactory.ChallengeFactoryRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Generates the missing challenges of a single skill.
+ *
+ * <p>Runs no transaction of its own: generation spans several open ai calls and the challenges
+ * are saved by the {@link WriteBehindStore}, holding a connection across the calls would only
+ * drain the pool.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChallengeSkillProcessor {
+
+  private final ChallengeFactory factory;
+
+  private final SkillInventory inventory;
+
+  @Value("${feature.maxquestions}")
+  private Integer maxQuestionsCap;
+
+  @Value("${feature.replenish.enabled:false}")
+  private boolean replenish;
+
+  @Value("${feature.replenish.warm:${feature.maxquestions}}")
+  private Integer warmThreshold;
+
+  /**
+   * Creates the challenges missing for the skill.
+   *
+   * @param skill the skill.
+   */
+  public void createAssessment(String skill) {
+    Verify.verifyNotNull(skill, "Skill cannot be null");
+    final Integer existingChallenges = inventory.getChallengeCount(skill);
+    int pendingChallenges = getPendingChallengeCount(existingChallenges);
+    ChallengeFactoryRequest factoryRequest =
+        ChallengeFactoryRequest.builder()
+            .difficulty(AssessmentDifficulty.BEGINNER.getString())
+            .skill(skill)
+            .quantity(pendingChallenges)
+            .build();
+    factory.createChallenges(factoryRequest);
+  }
+
+  /**
+   * Checks if the skill already holds the maximum number of challenges.
+   *
+   * @param skill the skill.
+   * @return true if no challenges are missing.
+   */
+  public boolean isAtCap(String skill) {
+    return getPendingChallengeCount(inventory.getChallengeCount(skill)) == 0;
+  }
+
+  /**
+   * Checks if the skill holds enough challenges to be served without generating first, see {@link
+   * #getWarmThreshold()}.
+   *
+   * @param skill the skill.
+   * @return true if the skill is warm.
+   */
+  public boolean isWarm(String skill) {
+    return inventory.getChallengeCount(skill) >= getWarmThreshold();
+  }
+
+  /**
+   * Returns the number of challenges a skill needs to be served. With replenishment enabled that is
+   * {@code feature.replenish.warm} challenges, the rest is topped up in the background, otherwise
+   * the skill has to be at its cap.
+   *
+   * @return the threshold.
+   */
+  public int getWarmThreshold() {
+    return replenish ? Math.min(warmThreshold, maxQuestionsCap) : maxQuestionsCap;
+  }
+
+  private int getPendingChallengeCount(Integer existingChallenges) {
+    int pendingChallenges = 0;
+    if (existingChallenges < maxQuestionsCap) {
+      pendingChallenges = maxQuestionsCap - existingChallenges;
+    }
+    return pendingChallenges;
+  }
+}
@@ -1,19 +1,28 @@
 package com.smilebat.learntribe.openai.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Verify;
 import com.smilebat.learntribe.assessment.AssessmentRequest;
-import com.smilebat.learntribe.dataaccess.ChallengeRepository;
-import com.smilebat.learntribe.enums.AssessmentDifficulty;
 import com.smilebat.learntribe.kafka.KafkaSkillsRequest;
+import com.smilebat.learntribe.openai.configuration.GenerationConfig;
 import com.smilebat.learntribe.openai.kafka.KafkaProducer;
-import com.smilebat.learntribe.openai.services.ChallengeFactory.ChallengeFactoryRequest;
+import com.smilebat.learntribe.openai.services.helpers.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import javax.transaction.Transactional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -29,16 +38,30 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class ChallengeStore {
 
-  private final ChallengeFactory factory;
+  private static final String FORWARD_METRIC = "openai.assessment.forward";
 
-  private final ChallengeRepository challengeRepository;
+  private final ChallengeSkillProcessor skillProcessor;
 
   private final KafkaProducer producer;
 
-  private final ObjectMapper mapper;
+  private final SkillInventory inventory;
 
-  @Value("${feature.maxquestions}")
-  private Integer maxQuestionsCap;
+  private final PriorityScheduler scheduler;
+
+  private final SkillReadiness readiness;
+
+  private final SkillProgressTracker progressTracker;
+
+  private final MeterRegistry registry;
+
+  @Qualifier(GenerationConfig.GENERATION_EXECUTOR)
+  private final ExecutorService generationExecutor;
+
+  private final SingleFlight<String> skillFlights = new SingleFlight<>();
+
+  /* scheduler tasks of the generations in flight, by normalized skill */
+  private final ConcurrentMap<String, CompletableFuture<Void>> generations =
+      new ConcurrentHashMap<>();
 
   @Value("${feature.openai}")
   private boolean openAiFeature;
@@ -47,46 +70,254 @@ public class ChallengeStore {
    * Creates assessments and challenges for missing skills. Acknowledges the assessment service for
    * missing assessments.
    *
+   * <p>Skills are processed concurrently on the {@link PriorityScheduler}, ahead of other work when
+   * the request has assignees waiting. The request is forwarded as soon as every skill is ready,
+   * see {@link SkillReadiness}, right away if the skills are warm, while generation may go on. It
+   * is sent from a generation worker, not from the thread that stored the challenges. The call
+   * returns once generation completed and the broker acknowledged the forwarded request, a request
+   * that could not be forwarded fails the call. Warm skills are not generated, see {@link
+   * ChallengeSkillProcessor#isWarm(String)}, a skill already being generated for another request
+   * is joined, without holding a worker, instead of generated again. Every skill is remembered for
+   * the {@link InventoryReplenisher}. Requests of a bulk job report the progress of their skills
+   * to the {@link SkillProgressTracker}.
+   *
    * @param request the {@link AssessmentRequest}.
-   * @throws JsonProcessingException on failure to process json.
+   * @param jobId the bulk job id of the request, null outside a job.
    */
-  public void createAssessments(KafkaSkillsRequest request) throws JsonProcessingException {
+  public void createAssessments(KafkaSkillsRequest request, String jobId) {
     Set<String> skills = request.getSkills();
     Verify.verifyNotNull(skills, "Skills cannot be null");
     // Preconditions.checkArgument(skills.size() > 0, "Skills cannot be empty");
+    skills.forEach(inventory::recordSkillRequest);
+
+    if (!openAiFeature) {
+      trackJob(jobId, request, Map.of());
+      forward(request).join();
+      return;
+    }
+    final Map<String, CompletableFuture<Void>> generation = generate(skills, getWorkClass(request));
+    trackJob(jobId, request, generation);
+    final CompletableFuture<Void> forwarded = forwardWhenReady(request, generation);
+    join(generation.values());
+    forwarded.join();
+  }
+
+  /**
+   * Creates assessments for a batch of requests. The skills of all requests are generated once
+   * per distinct skill, skills of any request with assignees ahead of other work, every request is
+   * acknowledged as soon as its own skills are ready. The call returns once every request was
+   * forwarded. Requests without skills are logged and skipped, the rest of the batch goes on.
+   *
+   * @param batch the list of {@link KafkaSkillsRequest}.
+   * @param batchJobIds the bulk job id of every request, null for requests outside a job.
+   */
+  public void createAssessments(List<KafkaSkillsRequest> batch, List<String> batchJobIds) {
+    final List<KafkaSkillsRequest> requests = new ArrayList<>(batch.size());
+    final List<String> jobIds = new ArrayList<>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.get(i).getSkills() == null) {
+        log.info("Skipping request {} of the batch without skills", i);
+      } else {
+        requests.add(batch.get(i));
+        jobIds.add(batchJobIds.get(i));
+      }
+    }
+    Map<String, String> skills = new LinkedHashMap<>();
+    Map<String, String> assignedSkills = new LinkedHashMap<>();
+    for (KafkaSkillsRequest request : requests) {
+      final boolean assigned = getWorkClass(request) == WorkClass.ASSESSMENT;
+      for (String skill : request.getSkills()) {
+        inventory.recordSkillRequest(skill);
+        skills.putIfAbsent(SkillInventory.normalize(skill), skill);
+        if (assigned) {
+          assignedSkills.putIfAbsent(SkillInventory.normalize(skill), skill);
+        }
+      }
+    }
+    log.info("Merged {} requests into {} distinct skills", requests.size(), skills.size());
+
+    if (!openAiFeature) {
+      for (int i = 0; i < requests.size(); i++) {
+        trackJob(jobIds.get(i), requests.get(i), Map.of());
+      }
+      join(requests.stream().map(this::forward).collect(Collectors.toList()));
+      return;
+    }
+    skills.keySet().removeAll(assignedSkills.keySet());
+    final Map<String, CompletableFuture<Void>> generation =
+        generate(assignedSkills.values(), WorkClass.ASSESSMENT);
+    generation.putAll(generate(skills.values(), WorkClass.REFILL));
+    for (int i = 0; i < requests.size(); i++) {
+      trackJob(jobIds.get(i), requests.get(i), generation);
+    }
+    final List<CompletableFuture<Void>> forwarded = new ArrayList<>();
+    for (KafkaSkillsRequest request : requests) {
+      forwarded.add(forwardWhenReady(request, generation));
+    }
+    join(generation.values());
+    join(forwarded);
+  }
 
-    if (openAiFeature) {
-      skills.forEach(this::createAssessment);
+  /**
+   * Tops up the challenges of the skill, unless it is at its cap or already being generated.
+   *
+   * @param skill the skill.
+   * @return true if the skill was generated.
+   */
+  public boolean replenish(String skill) {
+    if (skillProcessor.isAtCap(skill)) {
+      return false;
     }
+    return skillFlights.tryExecute(
+        SkillInventory.normalize(skill), () -> skillProcessor.createAssessment(skill));
+  }
+
+  /**
+   * Schedules the generation of the skills that are not warm.
+   *
+   * @param skills the skills.
+   * @param workClass the {@link WorkClass} of the generation.
+   * @return the generation by normalized skill.
+   */
+  private Map<String, CompletableFuture<Void>> generate(
+      Collection<String> skills, WorkClass workClass) {
+    final Map<String, CompletableFuture<Void>> generation = new LinkedHashMap<>();
+    for (String skill : skills) {
+      if (!skillProcessor.isWarm(skill)) {
+        generation.put(SkillInventory.normalize(skill), createAssessment(skill, workClass));
+      }
+    }
+    return generation;
+  }
+
+  /**
+   * Reports the progress of the skills of a bulk job request, skills without generation are done.
+   *
+   * @param jobId the bulk job id, null outside a job.
+   * @param request the {@link KafkaSkillsRequest}.
+   * @param generation the generation by normalized skill.
+   */
+  private void trackJob(
+      String jobId, KafkaSkillsRequest request, Map<String, CompletableFuture<Void>> generation) {
+    if (jobId == null) {
+      return;
+    }
+    for (String skill : request.getSkills()) {
+      final CompletableFuture<Void> future = generation.get(SkillInventory.normalize(skill));
+      if (future == null) {
+        progressTracker.done(jobId, skill);
+        continue;
+      }
+      progressTracker.started(jobId, skill);
+      future.whenComplete(
+          (result, ex) -> {
+            if (ex == null) {
+              progressTracker.done(jobId, skill);
+            } else {
+              progressTracker.failed(jobId, skill);
+            }
+          });
+    }
+  }
+
+  private static void join(Collection<CompletableFuture<Void>> futures) {
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+  }
+
+  /**
+   * Forwards the request on a generation worker once all its skills are ready. Requests without
+   * assignees are not forwarded at all.
+   *
+   * @param request the {@link KafkaSkillsRequest}.
+   * @param generation the generation by normalized skill.
+   * @return the future completed once the forwarded request was acknowledged.
+   */
+  private CompletableFuture<Void> forwardWhenReady(
+      KafkaSkillsRequest request, Map<String, CompletableFuture<Void>> generation) {
+    if (getWorkClass(request) != WorkClass.ASSESSMENT) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final CompletableFuture<Void> generated = CompletableFuture.completedFuture(null);
+    final Timer.Sample sample = Timer.start(registry);
+    final CompletableFuture<?>[] ready =
+        request
+            .getSkills()
+            .stream()
+            .map(
+                skill ->
+                    readiness.whenReady(
+                        skill, generation.getOrDefault(SkillInventory.normalize(skill), generated)))
+            .toArray(CompletableFuture[]::new);
+    final boolean parked = Arrays.stream(ready).anyMatch(future -> !future.isDone());
+    return CompletableFuture.allOf(ready)
+        .whenComplete(
+            (result, ex) -> {
+              sample.stop(
+                  Timer.builder(FORWARD_METRIC)
+                      .tag("parked", String.valueOf(parked))
+                      .tag("result", ex == null ? "success" : "failure")
+                      .register(registry));
+              if (ex != null) {
+                log.info("Not forwarding the assessment request, generation failed", ex);
+              }
+            })
+        .thenComposeAsync(result -> forward(request), generationExecutor);
+  }
+
+  /**
+   * Returns the class of the work for the request. Requests with assignees have someone waiting
+   * for them, requests without only fill the inventory.
+   *
+   * @param request the {@link KafkaSkillsRequest}.
+   * @return the {@link WorkClass}.
+   */
+  private static WorkClass getWorkClass(KafkaSkillsRequest request) {
+    final AssessmentRequest assessmentRequest = request.getAssessmentRequest();
+    final boolean assigned =
+        assessmentRequest != null
+            && assessmentRequest.getAssigneeEmails() != null
+            && !assessmentRequest.getAssigneeEmails().isEmpty();
+    return assigned ? WorkClass.ASSESSMENT : WorkClass.REFILL;
+  }
+
+  private CompletableFuture<Void> forward(KafkaSkillsRequest request) {
     final AssessmentRequest assessmentRequest = request.getAssessmentRequest();
     if (assessmentRequest != null) {
       final List<String> assigneeEmails = assessmentRequest.getAssigneeEmails();
       /*If request contains assigneeEmails forward back to assessment service*/
       if (assigneeEmails != null && !assigneeEmails.isEmpty()) {
-        producer.sendMessage(mapper.writeValueAsString(assessmentRequest));
+        return producer.sendAsync(assessmentRequest).thenAccept(result -> {});
       }
     }
+    return CompletableFuture.completedFuture(null);
   }
 
-  @Transactional
-  private void createAssessment(String skill) {
-    Verify.verifyNotNull(skill, "Skill cannot be null");
-    final Integer existingChallenges = challengeRepository.countBySkill(skill);
-    int pendingChallenges = getPendingChallengeCount(existingChallenges);
-    ChallengeFactoryRequest factoryRequest =
-        ChallengeFactoryRequest.builder()
-            .difficulty(AssessmentDifficulty.BEGINNER.getString())
-            .skill(skill)
-            .quantity(pendingChallenges)
-            .build();
-    factory.createChallenges(factoryRequest);
+  /**
+   * Schedules the generation of the skill, or joins the generation in flight for it. Joining does
+   * not hold a scheduler worker, the caller waits for the returned future. A generation still
+   * queued under a less urgent class is promoted to the class of the caller, so that a request
+   * with assignees does not wait at refill priority.
+   *
+   * @param skill the skill.
+   * @param workClass the {@link WorkClass} of the generation.
+   * @return the future of the generation.
+   */
+  private CompletableFuture<Void> createAssessment(String skill, WorkClass workClass) {
+    final String key = SkillInventory.normalize(skill);
+    final CompletableFuture<Void> flight =
+        skillFlights.executeAsync(key, () -> schedule(key, skill, workClass));
+    final CompletableFuture<Void> generation = generations.get(key);
+    if (generation != null) {
+      scheduler.promote(generation, workClass);
+    }
+    return flight;
   }
 
-  private int getPendingChallengeCount(Integer existingChallenges) {
-    int pendingChallenges = 0;
-    if (existingChallenges < maxQuestionsCap) {
-      pendingChallenges = maxQuestionsCap - existingChallenges;
-    }
-    return pendingChallenges;
+  private CompletableFuture<Void> schedule(String key, String skill, WorkClass workClass) {
+    final CompletableFuture<Void> generation =
+        scheduler.execute(workClass, () -> skillProcessor.createAssessment(skill));
+    generations.put(key, generation);
+    generation.whenComplete((result, ex) -> generations.remove(key, generation));
+    return generation;
   }
 }
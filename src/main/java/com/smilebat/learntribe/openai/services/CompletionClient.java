@@ -0,0 +1,23 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.smilebat.learntribe.openai.OpenAiRequest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client issuing open ai text completions, selected by {@code openai.client}.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+public interface CompletionClient {
+
+  /**
+   * Starts the completion of the request without waiting for it.
+   *
+   * @param request the {@link OpenAiRequest}.
+   * @return the {@link CompletableFuture} completed with the text of every choice.
+   */
+  CompletableFuture<List<String>> completeAsync(OpenAiRequest request);
+}
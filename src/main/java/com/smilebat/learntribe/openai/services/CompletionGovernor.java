@@ -0,0 +1,275 @@
+package com.smilebat.learntribe.openai.services;
+
+import feign.FeignException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Client side governor for open ai calls.
+ *
+ * <p>Every call takes a token from a request bucket refilled at {@code feature.governor.rate} per
+ * second and a slot under an adaptive concurrency limit. The limit grows additively while calls
+ * succeed within {@code feature.governor.latency} ms and is cut multiplicatively when open ai
+ * throttles (HTTP 429) or latency exceeds the threshold.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompletionGovernor {
+
+  private static final String METRIC = "openai.governor";
+
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private final MeterRegistry registry;
+
+  @Value("${feature.governor.rate:5}")
+  private double rate;
+
+  @Value("${feature.governor.burst:10}")
+  private double burst;
+
+  @Value("${feature.governor.initiallimit:4}")
+  private double initialLimit;
+
+  @Value("${feature.governor.minlimit:1}")
+  private double minLimit;
+
+  @Value("${feature.governor.maxlimit:32}")
+  private double maxLimit;
+
+  @Value("${feature.governor.backoff:0.5}")
+  private double backoff;
+
+  @Value("${feature.governor.latency:20000}")
+  private long latencyThreshold;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition available = lock.newCondition();
+
+  private double limit;
+
+  private int inFlight;
+
+  private int waiting;
+
+  private double tokens;
+
+  private long refilledAt;
+
+  private Timer waitTimer;
+
+  /** Initializes the limit, the bucket and the metrics. */
+  @PostConstruct
+  public void init() {
+    limit = initialLimit;
+    tokens = burst;
+    refilledAt = System.nanoTime();
+    waitTimer = registry.timer(METRIC + ".wait");
+    registry.gauge(METRIC + ".limit", this, CompletionGovernor::getLimit);
+    registry.gauge(METRIC + ".inflight", this, CompletionGovernor::getInFlight);
+    registry.gauge(METRIC + ".queue", this, CompletionGovernor::getWaiting);
+  }
+
+  /**
+   * Runs the call once the rate and concurrency limits allow it.
+   *
+   * @param call the open ai call.
+   * @param <T> the result type.
+   * @return the result of the call.
+   */
+  public <T> T execute(Supplier<T> call) {
+    acquire();
+    final long start = System.nanoTime();
+    try {
+      final T result = call.get();
+      onSuccess(System.nanoTime() - start);
+      return result;
+    } catch (RuntimeException ex) {
+      onFailure(ex);
+      throw ex;
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Starts the asynchronous call once the rate and concurrency limits allow it. Only the wait for
+   * the limits blocks the caller, the slot is held until the returned future completes.
+   *
+   * @param call starts the open ai call.
+   * @param <T> the result type.
+   * @return the future of the call.
+   */
+  public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+    acquire();
+    final long start = System.nanoTime();
+    final CompletableFuture<T> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException ex) {
+      onFailure(ex);
+      release();
+      throw ex;
+    }
+    return future.whenComplete(
+        (result, ex) -> {
+          try {
+            if (ex == null) {
+              onSuccess(System.nanoTime() - start);
+            } else {
+              onFailure(unwrap(ex));
+            }
+          } finally {
+            release();
+          }
+        });
+  }
+
+  /**
+   * Returns the current concurrency limit.
+   *
+   * @return the limit.
+   */
+  public double getLimit() {
+    return withLock(() -> Math.floor(limit));
+  }
+
+  /**
+   * Returns the number of calls in flight.
+   *
+   * @return the calls in flight.
+   */
+  public double getInFlight() {
+    return withLock(() -> (double) inFlight);
+  }
+
+  /**
+   * Returns the number of calls waiting for the limits.
+   *
+   * @return the waiting calls.
+   */
+  public double getWaiting() {
+    return withLock(() -> (double) waiting);
+  }
+
+  private void acquire() {
+    final long start = System.nanoTime();
+    lock.lock();
+    try {
+      waiting++;
+      try {
+        while (true) {
+          if (inFlight < Math.floor(limit)) {
+            refill();
+            if (tokens >= 1) {
+              tokens -= 1;
+              break;
+            }
+            available.awaitNanos((long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1)));
+          } else {
+            available.await();
+          }
+        }
+      } finally {
+        waiting--;
+      }
+      inFlight++;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for open ai", ex);
+    } finally {
+      lock.unlock();
+      waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void release() {
+    lock.lock();
+    try {
+      inFlight--;
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void refill() {
+    final long now = System.nanoTime();
+    tokens = Math.min(burst, tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+    refilledAt = now;
+  }
+
+  private void onSuccess(long latency) {
+    lock.lock();
+    try {
+      if (TimeUnit.NANOSECONDS.toMillis(latency) > latencyThreshold) {
+        decrease("latency");
+      } else {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void onFailure(RuntimeException ex) {
+    if (getStatus(ex) != TOO_MANY_REQUESTS) {
+      return;
+    }
+    lock.lock();
+    try {
+      tokens = 0;
+      decrease("throttled");
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static RuntimeException unwrap(Throwable ex) {
+    final Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+    return cause instanceof RuntimeException
+        ? (RuntimeException) cause
+        : new CompletionException(cause);
+  }
+
+  private static int getStatus(RuntimeException ex) {
+    if (ex instanceof FeignException) {
+      return ((FeignException) ex).status();
+    }
+    if (ex instanceof OpenAiHttpException) {
+      return ((OpenAiHttpException) ex).getStatus();
+    }
+    return -1;
+  }
+
+  private void decrease(String reason) {
+    limit = Math.max(minLimit, limit * backoff);
+    log.info("Open ai concurrency limit reduced to {} ({})", Math.floor(limit), reason);
+  }
+
+  private double withLock(Supplier<Double> supplier) {
+    lock.lock();
+    try {
+      return supplier.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smilebat.learntribe.openai.OpenAiRequest;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Open ai request bounding the tokens open ai generates for it.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Getter
+@Setter
+public class CompletionRequest extends OpenAiRequest {
+
+  /** Most tokens generated per choice, the client default applies when absent. */
+  @JsonProperty("max_tokens")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Integer maxTokens;
+}
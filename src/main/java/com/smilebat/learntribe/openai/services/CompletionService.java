@@ -0,0 +1,222 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.smilebat.learntribe.openai.OpenAiRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Entry point for open ai text completions, with a bounded completion cache in front.
+ *
+ * <p>{@link PromptType#isReusable() Reusable} prompts are answered from the cache for a short
+ * window, unless the caller asks the same prompt again for more output. Other prompts always
+ * reach open ai, their callers may hand back completions they did not use, which are served to the
+ * next job of the same family instead of a new call. Calls that reach open ai pass through the
+ * {@link CompletionGovernor} and the configured {@link CompletionClient}. Every choice of a {@link
+ * MultiChoiceRequest} is returned.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Service
+@RequiredArgsConstructor
+public class CompletionService {
+
+  private static final String COMPLETION_METRIC = "openai.completion";
+
+  private static final String CACHE_METRIC = COMPLETION_METRIC + ".cache";
+
+  private final CompletionClient completionClient;
+
+  private final CompletionGovernor governor;
+
+  private final MeterRegistry registry;
+
+  @Value("${feature.cache.summary.ttl:60}")
+  private long summaryTtl;
+
+  @Value("${feature.cache.summary.size:500}")
+  private long summarySize;
+
+  @Value("${feature.cache.unparsed.ttl:1800}")
+  private long unparsedTtl;
+
+  @Value("${feature.cache.unparsed.size:200}")
+  private long unparsedSize;
+
+  @Value("${feature.cache.unparsed.perkey:10}")
+  private int unparsedPerKey;
+
+  private Cache<String, List<String>> reusable;
+
+  private Cache<String, Queue<String>> unparsed;
+
+  /** Builds the caches and registers their size gauges. */
+  @PostConstruct
+  public void init() {
+    reusable =
+        CacheBuilder.newBuilder()
+            .maximumSize(summarySize)
+            .expireAfterWrite(summaryTtl, TimeUnit.SECONDS)
+            .build();
+    unparsed =
+        CacheBuilder.newBuilder()
+            .maximumSize(unparsedSize)
+            .expireAfterWrite(unparsedTtl, TimeUnit.SECONDS)
+            .build();
+    registry.gauge(CACHE_METRIC + ".size", reusable, Cache::size);
+    registry.gauge(CACHE_METRIC + ".unparsed.size", unparsed, Cache::size);
+  }
+
+  /**
+   * Completes the prompt of the request.
+   *
+   * @param type the {@link PromptType} of the request.
+   * @param request the {@link OpenAiRequest}.
+   * @return the completed text of every choice.
+   */
+  public List<String> complete(PromptType type, OpenAiRequest request) {
+    return complete(type, request, true);
+  }
+
+  /**
+   * Completes the prompt of the request.
+   *
+   * @param type the {@link PromptType} of the request.
+   * @param request the {@link OpenAiRequest}.
+   * @param useCache false to skip the cache lookup of a reusable prompt, for callers asking the
+   *     same prompt again for more output. The completion still refreshes the cache.
+   * @return the completed text of every choice.
+   */
+  public List<String> complete(PromptType type, OpenAiRequest request, boolean useCache) {
+    try {
+      return completeAsync(type, request, useCache).join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Starts the completion of the prompt of the request. The caller blocks only while the {@link
+   * CompletionGovernor} holds the call back.
+   *
+   * @param type the {@link PromptType} of the request.
+   * @param request the {@link OpenAiRequest}.
+   * @return the {@link CompletableFuture} completed with the text of every choice.
+   */
+  public CompletableFuture<List<String>> completeAsync(PromptType type, OpenAiRequest request) {
+    return completeAsync(type, request, true);
+  }
+
+  /**
+   * Starts the completion of the prompt of the request, see {@link #completeAsync(PromptType,
+   * OpenAiRequest)}.
+   *
+   * @param type the {@link PromptType} of the request.
+   * @param request the {@link OpenAiRequest}.
+   * @param useCache false to skip the cache lookup of a reusable prompt.
+   * @return the {@link CompletableFuture} completed with the text of every choice.
+   */
+  public CompletableFuture<List<String>> completeAsync(
+      PromptType type, OpenAiRequest request, boolean useCache) {
+    if (!type.isReusable()) {
+      return getCompletions(type, request);
+    }
+    final String key = getCacheKey(request);
+    if (useCache) {
+      final List<String> texts = reusable.getIfPresent(key);
+      record(type, texts != null);
+      if (texts != null) {
+        return CompletableFuture.completedFuture(texts);
+      }
+    }
+    return getCompletions(type, request)
+        .thenApply(
+            completed -> {
+              reusable.put(key, completed);
+              return completed;
+            });
+  }
+
+  /**
+   * Retrieves a completion previously handed back for the key.
+   *
+   * @param type the {@link PromptType} of the completion.
+   * @param key the job family key.
+   * @return the unparsed text, or null if none is available.
+   */
+  public String pollUnparsed(PromptType type, String key) {
+    final Queue<String> texts = unparsed.getIfPresent(key);
+    final String text = texts != null ? texts.poll() : null;
+    record(type, text != null);
+    return text;
+  }
+
+  /**
+   * Hands back a completion that was not used, for a later job of the same family.
+   *
+   * @param key the job family key.
+   * @param text the unparsed text.
+   */
+  public void offerUnparsed(String key, String text) {
+    if (text == null || text.isBlank()) {
+      return;
+    }
+    final Queue<String> texts =
+        unparsed.asMap().computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+    if (texts.size() < unparsedPerKey) {
+      texts.offer(text);
+    }
+  }
+
+  private void record(PromptType type, boolean hit) {
+    Counter.builder(CACHE_METRIC)
+        .tag("type", type.getType())
+        .tag("result", hit ? "hit" : "miss")
+        .register(registry)
+        .increment();
+  }
+
+  private static String getCacheKey(OpenAiRequest request) {
+    if (request instanceof MultiChoiceRequest) {
+      return ((MultiChoiceRequest) request).getN() + ":" + request.getPrompt();
+    }
+    return request.getPrompt();
+  }
+
+  private CompletableFuture<List<String>> getCompletions(PromptType type, OpenAiRequest request) {
+    final Timer.Sample sample = Timer.start(registry);
+    final CompletableFuture<List<String>> completions;
+    try {
+      completions = governor.executeAsync(() -> completionClient.completeAsync(request));
+    } catch (RuntimeException ex) {
+      record(sample, type, ex);
+      throw ex;
+    }
+    return completions.whenComplete((texts, ex) -> record(sample, type, ex));
+  }
+
+  private void record(Timer.Sample sample, PromptType type, Throwable ex) {
+    sample.stop(
+        Timer.builder(COMPLETION_METRIC)
+            .tag("type", type.getType())
+            .tag("result", ex == null ? "success" : "failure")
+            .register(registry));
+  }
+}
@@ -0,0 +1,51 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.smilebat.learntribe.learntribeclients.openai.OpenAiService;
+import com.smilebat.learntribe.openai.OpenAiRequest;
+import com.smilebat.learntribe.openai.configuration.GenerationConfig;
+import com.smilebat.learntribe.openai.response.Choice;
+import com.smilebat.learntribe.openai.response.OpenAiResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Completes through the feign {@link OpenAiService}. The call blocks a thread of the open ai
+ * executor until open ai answers, never one of the generation workers waiting for a governor slot.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "openai.client", havingValue = "feign", matchIfMissing = true)
+public class FeignCompletionClient implements CompletionClient {
+
+  private final OpenAiService openAiService;
+
+  @Qualifier(GenerationConfig.OPENAI_EXECUTOR)
+  private final ExecutorService openAiExecutor;
+
+  @Override
+  public CompletableFuture<List<String>> completeAsync(OpenAiRequest request) {
+    return CompletableFuture.supplyAsync(
+        () -> getTexts(openAiService.getCompletions(request)), openAiExecutor);
+  }
+
+  private static List<String> getTexts(OpenAiResponse completions) {
+    final List<Choice> choices = completions.getChoices();
+    if (choices == null || choices.isEmpty()) {
+      log.info("Unable to create open ai completion text");
+      throw new IllegalArgumentException();
+    }
+    return choices.stream().map(Choice::getText).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,196 @@
+package com.smilebat.learntribe.openai.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Limits of a single generation job.
+ *
+ * <p>A job may start a bounded number of attempts, spend a bounded number of estimated tokens,
+ * tolerate a bounded number of failed calls and must end before its deadline. The parse yield of
+ * the last attempts is tracked, once it drops below the minimum the job escalates to its fallback
+ * prompt. The yield of every call is recorded by {@code openai.parse.yield} and the reason a job
+ * ends is counted by {@code openai.generation.outcome}.
+ *
+ * <p>Not thread safe, a budget belongs to the thread running the job.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+public class GenerationBudget {
+
+  static final String OUTCOME_METRIC = "openai.generation.outcome";
+
+  static final String YIELD_METRIC = "openai.parse.yield";
+
+  private final PromptType type;
+
+  private final MeterRegistry registry;
+
+  private final int maxAttempts;
+
+  private final long maxTokens;
+
+  private final int maxFailures;
+
+  private final double minYield;
+
+  private final int yieldWindow;
+
+  private final long deadline;
+
+  private final Deque<Double> yields = new ArrayDeque<>();
+
+  @Getter private int attempts;
+
+  @Getter private long tokens;
+
+  @Getter private int failures;
+
+  @Getter private boolean escalated;
+
+  @Getter private String reason;
+
+  GenerationBudget(
+      PromptType type,
+      MeterRegistry registry,
+      int maxAttempts,
+      long maxTokens,
+      int maxFailures,
+      double minYield,
+      int yieldWindow,
+      long timeoutMillis) {
+    this.type = type;
+    this.registry = registry;
+    this.maxAttempts = maxAttempts;
+    this.maxTokens = maxTokens;
+    this.maxFailures = maxFailures;
+    this.minYield = minYield;
+    this.yieldWindow = yieldWindow;
+    this.deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+  }
+
+  /**
+   * Estimates the tokens of a call.
+   *
+   * @param prompt the prompt.
+   * @param completionTokens the expected tokens of the completion.
+   * @return the estimated tokens.
+   */
+  public static int estimateTokens(String prompt, int completionTokens) {
+    return prompt.length() / 4 + 1 + completionTokens;
+  }
+
+  /**
+   * Reserves an attempt if the budget allows it.
+   *
+   * @param estimatedTokens the estimated tokens of the attempt.
+   * @return false if the budget is exhausted.
+   */
+  public boolean tryAttempt(int estimatedTokens) {
+    if (isExhausted()) {
+      return false;
+    }
+    if (getRemainingNanos() <= 0) {
+      exhaust("deadline");
+    } else if (attempts >= maxAttempts) {
+      exhaust("attempts");
+    } else if (tokens + estimatedTokens > maxTokens) {
+      exhaust("tokens");
+    } else {
+      attempts++;
+      tokens += estimatedTokens;
+    }
+    return !isExhausted();
+  }
+
+  /** Records a failed call. */
+  public void recordFailure() {
+    failures++;
+    if (failures >= maxFailures) {
+      exhaust("failures");
+    }
+  }
+
+  /**
+   * Records the parse yield of a completed call.
+   *
+   * @param requested the number of items the prompt asked for.
+   * @param parsed the number of items parsed.
+   */
+  public void recordYield(int requested, int parsed) {
+    if (requested <= 0) {
+      return;
+    }
+    final double yield = Math.min(1.0, (double) parsed / requested);
+    registry.summary(YIELD_METRIC, "type", type.getType()).record(yield);
+    yields.addLast(yield);
+    if (yields.size() > yieldWindow) {
+      yields.removeFirst();
+    }
+    if (!escalated && yields.size() == yieldWindow && getYield() < minYield) {
+      escalated = true;
+      log.info("Parse yield of {} prompts dropped to {}, escalating", type.getType(), getYield());
+    }
+  }
+
+  /**
+   * Returns the average parse yield of the last attempts.
+   *
+   * @return the yield, 1 if nothing was recorded yet.
+   */
+  public double getYield() {
+    return yields.stream().mapToDouble(Double::doubleValue).average().orElse(1.0);
+  }
+
+  /**
+   * Returns the time left until the deadline.
+   *
+   * @return the remaining nanoseconds.
+   */
+  public long getRemainingNanos() {
+    return deadline - System.nanoTime();
+  }
+
+  /**
+   * Ends the job early.
+   *
+   * @param exhaustedReason why the job ends.
+   */
+  public void exhaust(String exhaustedReason) {
+    if (reason == null) {
+      reason = exhaustedReason;
+    }
+  }
+
+  /**
+   * Checks if the job has to end.
+   *
+   * @return true if exhausted.
+   */
+  public boolean isExhausted() {
+    return reason != null;
+  }
+
+  /**
+   * Records the outcome of the job.
+   *
+   * @param completed whether the job produced everything it was asked for.
+   * @return the recorded reason.
+   */
+  public String finish(boolean completed) {
+    final String outcome = completed ? "completed" : reason != null ? reason : "incomplete";
+    Counter.builder(OUTCOME_METRIC)
+        .tag("type", type.getType())
+        .tag("reason", outcome)
+        .register(registry)
+        .increment();
+    return outcome;
+  }
+}
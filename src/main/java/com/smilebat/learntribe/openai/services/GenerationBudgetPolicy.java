@@ -0,0 +1,50 @@
+package com.smilebat.learntribe.openai.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the {@link GenerationBudget} of every generation job from the {@code feature.budget}
+ * settings.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Component
+@RequiredArgsConstructor
+public class GenerationBudgetPolicy {
+
+  private final MeterRegistry registry;
+
+  @Value("${feature.budget.maxattempts:20}")
+  private int maxAttempts;
+
+  @Value("${feature.budget.maxtokens:40000}")
+  private long maxTokens;
+
+  @Value("${feature.budget.maxfailures:5}")
+  private int maxFailures;
+
+  @Value("${feature.budget.minyield:0.5}")
+  private double minYield;
+
+  @Value("${feature.budget.yieldwindow:3}")
+  private int yieldWindow;
+
+  @Value("${feature.budget.timeout:120000}")
+  private long timeout;
+
+  /**
+   * Starts the budget of a job.
+   *
+   * @param type the {@link PromptType} of the job.
+   * @return the {@link GenerationBudget}.
+   */
+  public GenerationBudget newBudget(PromptType type) {
+    return new GenerationBudget(
+        type, registry, maxAttempts, maxTokens, maxFailures, minYield, yieldWindow, timeout);
+  }
+}
@@ -0,0 +1,83 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.smilebat.learntribe.openai.OpenAiRequest;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Completes through the asynchronous api of the JDK {@link HttpClient}.
+ *
+ * <p>No thread waits while open ai generates, the response is handled by the few threads of the
+ * client once it arrives. Many completions may therefore be in flight at once, bounded only by the
+ * {@link CompletionGovernor}. The client and the {@code openai.*} settings are those of the {@link
+ * OpenAiEndpoint}.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "openai.client", havingValue = "http")
+public class HttpCompletionClient implements CompletionClient {
+
+  private final ObjectMapper mapper;
+
+  private final OpenAiEndpoint endpoint;
+
+  @Override
+  public CompletableFuture<List<String>> completeAsync(OpenAiRequest request) {
+    final HttpRequest httpRequest = endpoint.newRequest(getBody(request)).build();
+    return endpoint
+        .getHttpClient()
+        .sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
+        .thenApply(this::getTexts);
+  }
+
+  private List<String> getTexts(HttpResponse<String> response) {
+    if (response.statusCode() != 200) {
+      throw new OpenAiHttpException(response.statusCode(), response.body());
+    }
+    final JsonNode completions;
+    try {
+      completions = mapper.readTree(response.body());
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("Unable to read open ai completion", ex);
+    }
+    final List<String> texts = new ArrayList<>();
+    completions.path("choices").forEach(choice -> texts.add(choice.path("text").asText("")));
+    if (texts.isEmpty()) {
+      log.info("Unable to create open ai completion text");
+      throw new IllegalArgumentException();
+    }
+    return texts;
+  }
+
+  private String getBody(OpenAiRequest request) {
+    final ObjectNode body = mapper.valueToTree(request);
+    if (!body.hasNonNull("model")) {
+      body.put("model", endpoint.getModel());
+    }
+    if (!body.hasNonNull("max_tokens")) {
+      body.put("max_tokens", endpoint.getMaxTokens());
+    }
+    try {
+      return mapper.writeValueAsString(body);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalArgumentException("Unable to encode open ai request", ex);
+    }
+  }
+}
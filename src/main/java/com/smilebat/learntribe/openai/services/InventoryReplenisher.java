@@ -0,0 +1,157 @@
+package com.smilebat.learntribe.openai.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tops up the challenge and summary pools in the background.
+ *
+ * <p>Every {@code feature.replenish.interval} ms the skills and roles requested within {@code
+ * feature.replenish.window} ms are checked first, then every stored skill, emptiest first. Those
+ * below {@code feature.maxquestions} or {@code feature.maxsummary} are refilled as {@link
+ * WorkClass#REFILL} work, but only while open ai is idle: nothing waits at the {@link
+ * CompletionGovernor} and fewer calls than {@code feature.replenish.idleratio} of its limit are in
+ * flight. At most {@code feature.replenish.concurrency} refills run at once. Refills join the same
+ * coalescing as request driven generation and skip whatever is already being generated.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryReplenisher {
+
+  private static final String METRIC = "openai.replenish";
+
+  private final SkillInventory inventory;
+
+  private final ChallengeStore challengeStore;
+
+  private final SummaryFactory summaryFactory;
+
+  private final CompletionGovernor governor;
+
+  private final MeterRegistry registry;
+
+  private final PriorityScheduler scheduler;
+
+  private final AtomicInteger running = new AtomicInteger();
+
+  @Value("${feature.openai}")
+  private boolean openAiFeature;
+
+  @Value("${feature.replenish.enabled:false}")
+  private boolean enabled;
+
+  @Value("${feature.replenish.window:3600000}")
+  private long window;
+
+  @Value("${feature.replenish.concurrency:1}")
+  private int concurrency;
+
+  @Value("${feature.replenish.idleratio:0.5}")
+  private double idleRatio;
+
+  @Value("${feature.maxquestions}")
+  private Integer maxQuestionsCap;
+
+  /** Starts refills while open ai has idle capacity. */
+  @Scheduled(
+      initialDelayString = "${feature.replenish.initialdelay:60000}",
+      fixedDelayString = "${feature.replenish.interval:30000}")
+  public void replenish() {
+    if (!enabled || !openAiFeature) {
+      return;
+    }
+    int started = 0;
+    for (Refill refill : getRefills()) {
+      if (running.get() >= concurrency || !isIdle()) {
+        break;
+      }
+      running.incrementAndGet();
+      started++;
+      scheduler
+          .execute(WorkClass.REFILL, () -> run(refill))
+          .whenComplete((result, ex) -> running.decrementAndGet());
+    }
+    if (started > 0) {
+      log.info("Started {} background refills", started);
+    }
+  }
+
+  private void run(Refill refill) {
+    final String type = refill.getType().getType();
+    String result = "failure";
+    try {
+      result = refill.getTask().getAsBoolean() ? "refilled" : "skipped";
+    } catch (RuntimeException ex) {
+      log.info("Background {} refill failed", type, ex);
+    } finally {
+      registry.counter(METRIC, "type", type, "result", result).increment();
+    }
+  }
+
+  private boolean isIdle() {
+    return governor.getWaiting() == 0 && governor.getInFlight() < governor.getLimit() * idleRatio;
+  }
+
+  /**
+   * Collects the pending refills, requested skills and roles before the stored skills.
+   *
+   * @return the refills, in order.
+   */
+  private Collection<Refill> getRefills() {
+    final Map<String, Refill> refills = new LinkedHashMap<>();
+    inventory.getRequestedSkills(window).forEach(skill -> addChallengeRefill(refills, skill));
+    for (Map.Entry<String, String> summary : inventory.getRequestedSummaries(window)) {
+      final String role = summary.getKey();
+      final String skill = summary.getValue();
+      if (!summaryFactory.isAtCap(role, skill)) {
+        refills.putIfAbsent(
+            PromptType.SUMMARY.getType() + "|" + role + "|" + skill,
+            new Refill(PromptType.SUMMARY, () -> summaryFactory.replenish(role, skill)));
+      }
+    }
+    /* counts change while generation runs, sort on a snapshot */
+    final Map<String, Integer> counts = new HashMap<>();
+    inventory.getSkills().forEach(skill -> counts.put(skill, inventory.getChallengeCount(skill)));
+    final List<String> stored = new ArrayList<>(counts.keySet());
+    stored.sort(Comparator.comparing(counts::get));
+    stored.forEach(skill -> addChallengeRefill(refills, skill));
+    return refills.values();
+  }
+
+  private void addChallengeRefill(Map<String, Refill> refills, String skill) {
+    if (inventory.getChallengeCount(skill) < maxQuestionsCap) {
+      refills.putIfAbsent(
+          PromptType.MCQ.getType() + "|" + SkillInventory.normalize(skill),
+          new Refill(PromptType.MCQ, () -> challengeStore.replenish(skill)));
+    }
+  }
+
+  /** A pending refill. */
+  @Getter
+  @RequiredArgsConstructor
+  private static final class Refill {
+
+    private final PromptType type;
+
+    private final BooleanSupplier task;
+  }
+}
@@ -0,0 +1,35 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Open ai request asking for several independent choices of the same prompt.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Getter
+@Setter
+public class MultiChoiceRequest extends CompletionRequest {
+
+  /** Number of choices open ai generates for the prompt, defaults to one when absent. */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Integer n;
+
+  /**
+   * Creates a request for the prompt.
+   *
+   * @param prompt the prompt.
+   * @param n the number of choices.
+   * @return the {@link MultiChoiceRequest}.
+   */
+  public static MultiChoiceRequest of(String prompt, int n) {
+    final MultiChoiceRequest request = new MultiChoiceRequest();
+    request.setPrompt(prompt);
+    request.setN(n);
+    return request;
+  }
+}
@@ -0,0 +1,71 @@
+package com.smilebat.learntribe.openai.services;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import javax.annotation.PostConstruct;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The open ai completion endpoint called through the JDK {@link HttpClient}, shared by the {@link
+ * HttpCompletionClient} and the {@link StreamingCompletionClient}.
+ *
+ * <p>Holds the {@code openai.*} settings and the one client both use, which negotiates HTTP/2 and
+ * keeps its connections alive between calls.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Component
+public class OpenAiEndpoint {
+
+  @Value("${openai.url:https://api.openai.com/v1/completions}")
+  private String url;
+
+  @Value("${openai.api-key:}")
+  private String apiKey;
+
+  @Getter
+  @Value("${openai.model:text-davinci-003}")
+  private String model;
+
+  @Getter
+  @Value("${openai.maxtokens:1024}")
+  private int maxTokens;
+
+  @Value("${openai.timeout.connect:10000}")
+  private long connectTimeout;
+
+  @Value("${openai.timeout.read:60000}")
+  private long readTimeout;
+
+  @Getter private HttpClient httpClient;
+
+  /** Builds the http client. */
+  @PostConstruct
+  public void init() {
+    httpClient =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeout))
+            .build();
+  }
+
+  /**
+   * Creates a completion request posting the body.
+   *
+   * @param body the JSON body.
+   * @return the {@link HttpRequest.Builder}, for further headers.
+   */
+  public HttpRequest.Builder newRequest(String body) {
+    return HttpRequest.newBuilder(URI.create(url))
+        .timeout(Duration.ofMillis(readTimeout))
+        .header("Content-Type", "application/json")
+        .header("Authorization", "Bearer " + apiKey)
+        .POST(HttpRequest.BodyPublishers.ofString(body));
+  }
+}
@@ -0,0 +1,29 @@
+package com.smilebat.learntribe.openai.services;
+
+import lombok.Getter;
+
+/**
+ * Signals an unsuccessful HTTP response from open ai outside of the Feign client.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Getter
+public class OpenAiHttpException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int status;
+
+  /**
+   * Creates the exception.
+   *
+   * @param status the HTTP status.
+   * @param message the response body.
+   */
+  public OpenAiHttpException(int status, String message) {
+    super("Open ai responded with " + status + ": " + message);
+    this.status = status;
+  }
+}
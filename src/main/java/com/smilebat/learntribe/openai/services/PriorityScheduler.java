@@ -0,0 +1,228 @@
+package com.smilebat.learntribe.openai.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs open ai bound work on a fixed set of workers, sharing them between {@link WorkClass}es by
+ * weight.
+ *
+ * <p>Every class has its own queue. Idle workers take the next task of the class with the lowest
+ * pass, a class advances its pass by the inverse of its weight with every task taken (stride
+ * scheduling). A class with weight 6 therefore gets six tasks started for each task of a class
+ * with weight 1 while both have work queued, and any class gets every worker while the others are
+ * idle. A class that was idle rejoins at the current pass instead of catching up on the time it
+ * was idle. A queued task may be moved to a more urgent class when a caller of that class comes to
+ * wait for it. The wait of every task in its queue is recorded by {@code openai.scheduler.wait} and
+ * the queued tasks by {@code openai.scheduler.queue}, both tagged with the class.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+public class PriorityScheduler {
+
+  private static final String METRIC = "openai.scheduler";
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition available = lock.newCondition();
+
+  private final Map<WorkClass, Deque<Task>> queues = new EnumMap<>(WorkClass.class);
+
+  private final Map<WorkClass, Double> strides = new EnumMap<>(WorkClass.class);
+
+  private final Map<WorkClass, Double> passes = new EnumMap<>(WorkClass.class);
+
+  private final Map<WorkClass, Timer> waitTimers = new EnumMap<>(WorkClass.class);
+
+  private double pass;
+
+  private boolean shutdown;
+
+  /**
+   * Creates the scheduler and starts its workers.
+   *
+   * @param workers the number of workers.
+   * @param weights the weight of every class, classes without weight get 1.
+   * @param registry the {@link MeterRegistry}.
+   * @param threadFactory the factory of the workers.
+   */
+  public PriorityScheduler(
+      int workers,
+      Map<WorkClass, Integer> weights,
+      MeterRegistry registry,
+      ThreadFactory threadFactory) {
+    for (WorkClass workClass : WorkClass.values()) {
+      final Deque<Task> queue = new ArrayDeque<>();
+      queues.put(workClass, queue);
+      strides.put(workClass, 1.0 / Math.max(1, weights.getOrDefault(workClass, 1)));
+      passes.put(workClass, 0.0);
+      waitTimers.put(
+          workClass,
+          Timer.builder(METRIC + ".wait").tag("class", workClass.getType()).register(registry));
+      registry.gauge(METRIC + ".queue", Tags.of("class", workClass.getType()), queue, this::size);
+    }
+    for (int i = 0; i < workers; i++) {
+      threadFactory.newThread(this::work).start();
+    }
+  }
+
+  /**
+   * Queues the task under its class.
+   *
+   * @param workClass the {@link WorkClass} of the task.
+   * @param runnable the task.
+   * @return the future completed with the task.
+   */
+  public CompletableFuture<Void> execute(WorkClass workClass, Runnable runnable) {
+    final Task task = new Task(workClass, runnable);
+    lock.lock();
+    try {
+      if (shutdown) {
+        throw new RejectedExecutionException("Scheduler is shut down");
+      }
+      enqueue(task);
+    } finally {
+      lock.unlock();
+    }
+    return task.future;
+  }
+
+  /**
+   * Moves a queued task to a more urgent class, at the end of its queue. A task already taken by a
+   * worker, or queued under a class at least as urgent, is left as is.
+   *
+   * @param future the future returned for the task by {@link #execute(WorkClass, Runnable)}.
+   * @param workClass the {@link WorkClass} of the caller waiting for the task.
+   * @return true if the task was moved.
+   */
+  public boolean promote(CompletableFuture<Void> future, WorkClass workClass) {
+    lock.lock();
+    try {
+      for (WorkClass queued : WorkClass.values()) {
+        if (queued.compareTo(workClass) <= 0) {
+          continue;
+        }
+        final Iterator<Task> tasks = queues.get(queued).iterator();
+        while (tasks.hasNext()) {
+          final Task task = tasks.next();
+          if (task.future == future) {
+            tasks.remove();
+            task.workClass = workClass;
+            enqueue(task);
+            return true;
+          }
+        }
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Stops the workers once the queued tasks are done. */
+  public void shutdown() {
+    lock.lock();
+    try {
+      shutdown = true;
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void work() {
+    Task task;
+    while ((task = take()) != null) {
+      waitTimers
+          .get(task.workClass)
+          .record(System.nanoTime() - task.queuedAt, TimeUnit.NANOSECONDS);
+      try {
+        task.runnable.run();
+        task.future.complete(null);
+      } catch (RuntimeException | Error ex) {
+        task.future.completeExceptionally(ex);
+      }
+    }
+  }
+
+  private Task take() {
+    lock.lock();
+    try {
+      while (true) {
+        WorkClass next = null;
+        for (WorkClass workClass : WorkClass.values()) {
+          if (!queues.get(workClass).isEmpty()
+              && (next == null || passes.get(workClass) < passes.get(next))) {
+            next = workClass;
+          }
+        }
+        if (next != null) {
+          pass = passes.get(next);
+          passes.put(next, pass + strides.get(next));
+          return queues.get(next).removeFirst();
+        }
+        if (shutdown) {
+          return null;
+        }
+        available.await();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      log.info("Scheduler worker interrupted");
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void enqueue(Task task) {
+    final Deque<Task> queue = queues.get(task.workClass);
+    if (queue.isEmpty()) {
+      passes.put(task.workClass, Math.max(passes.get(task.workClass), pass));
+    }
+    queue.addLast(task);
+    available.signal();
+  }
+
+  private double size(Deque<Task> queue) {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** A queued task. */
+  private static final class Task {
+
+    private WorkClass workClass;
+
+    private final Runnable runnable;
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private final long queuedAt = System.nanoTime();
+
+    private Task(WorkClass workClass, Runnable runnable) {
+      this.workClass = workClass;
+      this.runnable = runnable;
+    }
+  }
+}
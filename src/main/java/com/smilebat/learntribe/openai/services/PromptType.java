@@ -0,0 +1,26 @@
+package com.smilebat.learntribe.openai.services;
+
+import lombok.Getter;
+
+/**
+ * Families of open ai prompts, with their completion cache policy.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+public enum PromptType {
+  /* Every question must be fresh, only unused completions are kept for later jobs. */
+  MCQ("mcq", false),
+  /* Identical summary prompts may share a completion for a short window. */
+  SUMMARY("summary", true);
+
+  @Getter private final String type;
+
+  @Getter private final boolean reusable;
+
+  PromptType(String type, boolean reusable) {
+    this.type = type;
+    this.reusable = reusable;
+  }
+}
@@ -0,0 +1,252 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.smilebat.learntribe.dataaccess.ChallengeRepository;
+import com.smilebat.learntribe.dataaccess.ProfileSummaryRepository;
+import com.smilebat.learntribe.openai.services.helpers.RecencyTracker;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * In memory counts of the stored challenges per skill and summaries per role and skill.
+ *
+ * <p>The counts are loaded with grouped queries, kept up to date by the factories on every save
+ * and reconciled with the database periodically. Until the first load completes the repositories
+ * are queried directly.
+ *
+ * <p>The skills and roles requested lately are remembered as well, so that their pools can be
+ * topped up ahead of the next request.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SkillInventory {
+
+  private static final String CHALLENGES_QUERY =
+      "select c.skill, count(c) from Challenge c group by c.skill";
+
+  private static final String SUMMARIES_QUERY =
+      "select p.role, p.skill, count(p) from ProfileSummary p group by p.role, p.skill";
+
+  private final EntityManager entityManager;
+
+  private final ChallengeRepository challengeRepository;
+
+  private final ProfileSummaryRepository summaryRepository;
+
+  private final ConcurrentMap<String, AtomicInteger> challenges = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, AtomicInteger> roleSummaries = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, AtomicInteger> roleSkillSummaries =
+      new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, String> skillNames = new ConcurrentHashMap<>();
+
+  @Value("${feature.replenish.maxtracked:1000}")
+  private int maxTracked;
+
+  private RecencyTracker<String> requestedSkills;
+
+  private RecencyTracker<Map.Entry<String, String>> requestedSummaries;
+
+  private volatile boolean loaded = false;
+
+  /** Creates the trackers of requested skills and summaries. */
+  @PostConstruct
+  public void init() {
+    requestedSkills = new RecencyTracker<>(maxTracked);
+    requestedSummaries = new RecencyTracker<>(maxTracked);
+  }
+
+  /**
+   * Normalizes a skill the way challenges are stored.
+   *
+   * @param skill the skill.
+   * @return the normalized skill.
+   */
+  public static String normalize(String skill) {
+    return skill.trim().toUpperCase();
+  }
+
+  /**
+   * Returns the number of stored challenges for the skill.
+   *
+   * @param skill the skill.
+   * @return the count.
+   */
+  public int getChallengeCount(String skill) {
+    if (!loaded) {
+      return challengeRepository.countBySkill(skill);
+    }
+    final AtomicInteger count = challenges.get(normalize(skill));
+    return count != null ? count.get() : 0;
+  }
+
+  /**
+   * Records stored challenges for the skill.
+   *
+   * @param skill the skill.
+   * @param count the number of challenges stored.
+   */
+  public void addChallenges(String skill, int count) {
+    skillNames.putIfAbsent(normalize(skill), skill);
+    challenges.computeIfAbsent(normalize(skill), k -> new AtomicInteger()).addAndGet(count);
+  }
+
+  /**
+   * Returns every skill holding challenges, spelled as first stored.
+   *
+   * @return the skills.
+   */
+  public List<String> getSkills() {
+    return new ArrayList<>(skillNames.values());
+  }
+
+  /**
+   * Records that challenges of the skill were requested.
+   *
+   * @param skill the skill.
+   */
+  public void recordSkillRequest(String skill) {
+    requestedSkills.touch(skill);
+  }
+
+  /**
+   * Returns the skills requested within the window, most recent first.
+   *
+   * @param windowMillis the window in milliseconds.
+   * @return the skills.
+   */
+  public List<String> getRequestedSkills(long windowMillis) {
+    return requestedSkills.getRecent(windowMillis);
+  }
+
+  /**
+   * Returns the number of stored summaries for the role and skill, or for the role alone when the
+   * skill is null.
+   *
+   * @param role the role.
+   * @param skill the skill, may be null.
+   * @return the count.
+   */
+  public int getSummaryCount(String role, String skill) {
+    if (!loaded) {
+      return skill == null
+          ? summaryRepository.countByRole(role)
+          : summaryRepository.countByRoleAndSkill(role, skill);
+    }
+    final AtomicInteger count =
+        skill == null ? roleSummaries.get(role) : roleSkillSummaries.get(getKey(role, skill));
+    return count != null ? count.get() : 0;
+  }
+
+  /**
+   * Records stored summaries for the role and skill.
+   *
+   * @param role the role.
+   * @param skill the skill, may be null.
+   * @param count the number of summaries stored.
+   */
+  public void addSummaries(String role, String skill, int count) {
+    roleSummaries.computeIfAbsent(role, k -> new AtomicInteger()).addAndGet(count);
+    if (skill != null) {
+      roleSkillSummaries
+          .computeIfAbsent(getKey(role, skill), k -> new AtomicInteger())
+          .addAndGet(count);
+    }
+  }
+
+  /**
+   * Records that summaries of the role and skill were requested.
+   *
+   * @param role the role.
+   * @param skill the skill, may be null.
+   */
+  public void recordSummaryRequest(String role, String skill) {
+    requestedSummaries.touch(new AbstractMap.SimpleImmutableEntry<>(role, skill));
+  }
+
+  /**
+   * Returns the roles and skills whose summaries were requested within the window, most recent
+   * first.
+   *
+   * @param windowMillis the window in milliseconds.
+   * @return the role and skill pairs, the skill may be null.
+   */
+  public List<Map.Entry<String, String>> getRequestedSummaries(long windowMillis) {
+    return requestedSummaries.getRecent(windowMillis);
+  }
+
+  /** Loads the counts at startup and reconciles them with the database afterwards. */
+  @Scheduled(
+      initialDelayString = "${feature.inventory.initialdelay:0}",
+      fixedDelayString = "${feature.inventory.reconcile:300000}")
+  public void reconcile() {
+    try {
+      Map<String, Integer> challengeCounts = new HashMap<>();
+      for (Object[] row : query(CHALLENGES_QUERY)) {
+        if (row[0] != null) {
+          skillNames.putIfAbsent(normalize((String) row[0]), (String) row[0]);
+          challengeCounts.merge(normalize((String) row[0]), toInt(row[1]), Integer::sum);
+        }
+      }
+      Map<String, Integer> roleCounts = new HashMap<>();
+      Map<String, Integer> roleSkillCounts = new HashMap<>();
+      for (Object[] row : query(SUMMARIES_QUERY)) {
+        final String role = (String) row[0];
+        final String skill = (String) row[1];
+        if (role == null) {
+          continue;
+        }
+        roleCounts.merge(role, toInt(row[2]), Integer::sum);
+        if (skill != null) {
+          roleSkillCounts.merge(getKey(role, skill), toInt(row[2]), Integer::sum);
+        }
+      }
+      apply(challenges, challengeCounts);
+      apply(roleSummaries, roleCounts);
+      apply(roleSkillSummaries, roleSkillCounts);
+      loaded = true;
+      log.info("Reconciled inventory of {} skills", challengeCounts.size());
+    } catch (RuntimeException ex) {
+      log.info("Unable to reconcile the skill inventory", ex);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Object[]> query(String jpql) {
+    return entityManager.createQuery(jpql).getResultList();
+  }
+
+  private static void apply(
+      ConcurrentMap<String, AtomicInteger> target, Map<String, Integer> source) {
+    target.forEach((key, count) -> count.set(source.getOrDefault(key, 0)));
+    source.forEach(
+        (key, count) -> target.computeIfAbsent(key, k -> new AtomicInteger()).set(count));
+  }
+
+  private static int toInt(Object count) {
+    return ((Number) count).intValue();
+  }
+
+  private static String getKey(String role, String skill) {
+    return role + "|" + skill;
+  }
+}
@@ -0,0 +1,175 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.smilebat.learntribe.kafka.KafkaSkillsRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tracks the generation progress of the skills of every bulk job.
+ *
+ * <p>Every job keeps the state of its own skills, {@link SkillState#QUEUED} until a request of the
+ * job is consumed. Only the requests published for the job, which carry its id, change the state,
+ * generation of the same skill for other requests or jobs does not. The questions of a skill are
+ * the challenges stored since the job was submitted. Jobs are kept for {@code feature.bulk.ttl}
+ * seconds after their last poll.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SkillProgressTracker {
+
+  private final SkillInventory inventory;
+
+  @Value("${feature.bulk.ttl:86400}")
+  private long ttl;
+
+  @Value("${feature.bulk.maxjobs:1000}")
+  private long maxJobs;
+
+  private Cache<String, Job> jobs;
+
+  /** Creates the job cache. */
+  @PostConstruct
+  public void init() {
+    jobs =
+        CacheBuilder.newBuilder()
+            .expireAfterAccess(ttl, TimeUnit.SECONDS)
+            .maximumSize(maxJobs)
+            .build();
+  }
+
+  /**
+   * Records that generation of the skill started for the job.
+   *
+   * @param jobId the job id, null outside a job.
+   * @param skill the skill.
+   */
+  public void started(String jobId, String skill) {
+    update(jobId, skill, SkillState.GENERATING);
+  }
+
+  /**
+   * Records that the skill holds its challenges for the job, generated or not.
+   *
+   * @param jobId the job id, null outside a job.
+   * @param skill the skill.
+   */
+  public void done(String jobId, String skill) {
+    update(jobId, skill, SkillState.DONE);
+  }
+
+  /**
+   * Records that generation or publishing of the skill failed for the job.
+   *
+   * @param jobId the job id, null outside a job.
+   * @param skill the skill.
+   */
+  public void failed(String jobId, String skill) {
+    update(jobId, skill, SkillState.FAILED);
+  }
+
+  /**
+   * Submits a job for the skills of the requests.
+   *
+   * @param requests the list of {@link KafkaSkillsRequest}.
+   * @return the job id.
+   */
+  public String createJob(Collection<KafkaSkillsRequest> requests) {
+    final Map<String, String> skills = new LinkedHashMap<>();
+    for (KafkaSkillsRequest request : requests) {
+      for (String skill : request.getSkills()) {
+        skills.putIfAbsent(SkillInventory.normalize(skill), skill);
+      }
+    }
+    final Map<String, Integer> baseline = new LinkedHashMap<>();
+    final ConcurrentMap<String, SkillState> states = new ConcurrentHashMap<>();
+    skills.forEach(
+        (key, skill) -> {
+          baseline.put(key, inventory.getChallengeCount(skill));
+          states.put(key, SkillState.QUEUED);
+        });
+    final String id = UUID.randomUUID().toString();
+    final Job job = new Job(id, requests.size(), skills, baseline, states);
+    jobs.put(job.id, job);
+    log.info("Submitted bulk job {} for {} skills", job.id, skills.size());
+    return job.id;
+  }
+
+  /**
+   * Returns the progress of the job.
+   *
+   * @param jobId the job id.
+   * @return the {@link BulkJobStatus}, empty if the job is unknown or expired.
+   */
+  public Optional<BulkJobStatus> getStatus(String jobId) {
+    final Job job = jobs.getIfPresent(jobId);
+    if (job == null) {
+      return Optional.empty();
+    }
+    final List<BulkJobStatus.SkillStatus> skills = new ArrayList<>();
+    boolean completed = true;
+    int questions = 0;
+    for (Map.Entry<String, String> entry : job.skills.entrySet()) {
+      final SkillState state = job.states.get(entry.getKey());
+      final int stored = inventory.getChallengeCount(entry.getValue());
+      final int produced = Math.max(0, stored - job.baseline.get(entry.getKey()));
+      completed &= state == SkillState.DONE || state == SkillState.FAILED;
+      questions += produced;
+      skills.add(
+          BulkJobStatus.SkillStatus.builder()
+              .skill(entry.getValue())
+              .status(state)
+              .questions(produced)
+              .build());
+    }
+    return Optional.of(
+        BulkJobStatus.builder()
+            .jobId(job.id)
+            .requests(job.requests)
+            .completed(completed)
+            .questions(questions)
+            .skills(skills)
+            .build());
+  }
+
+  private void update(String jobId, String skill, SkillState state) {
+    if (jobId == null) {
+      return;
+    }
+    final Job job = jobs.getIfPresent(jobId);
+    if (job == null) {
+      log.info("Ignoring progress of {} for unknown bulk job {}", skill, jobId);
+      return;
+    }
+    job.states.replace(SkillInventory.normalize(skill), state);
+  }
+
+  /** A submitted bulk job. */
+  @RequiredArgsConstructor
+  private static final class Job {
+    private final String id;
+    private final int requests;
+    private final Map<String, String> skills;
+    private final Map<String, Integer> baseline;
+    private final ConcurrentMap<String, SkillState> states;
+  }
+}
@@ -0,0 +1,141 @@
+package com.smilebat.learntribe.openai.services;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tells when the challenges of a skill can be served.
+ *
+ * <p>A skill is ready once it holds {@link ChallengeSkillProcessor#getWarmThreshold()} stored
+ * challenges, challenges still pending in the {@link WriteBehindStore} do not count. A skill whose
+ * generation completes below the threshold is ready as well once its pending challenges are
+ * stored, there is nothing more to wait for. Waiting skills are checked again whenever the write
+ * behind store flushes one of their batches. A skill that is not ready when the store drops one of
+ * its batches fails, its challenges would never arrive.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Service
+@RequiredArgsConstructor
+public class SkillReadiness {
+
+  private final SkillInventory inventory;
+
+  private final WriteBehindStore writeBehindStore;
+
+  private final ChallengeSkillProcessor skillProcessor;
+
+  private final ConcurrentMap<String, Set<Watcher>> watchers = new ConcurrentHashMap<>();
+
+  /** Listens to the flushes of the write behind store. */
+  @PostConstruct
+  public void init() {
+    writeBehindStore.addChallengeListener(this::check);
+  }
+
+  /**
+   * Checks if the skill holds enough stored challenges.
+   *
+   * @param skill the skill.
+   * @return true if ready.
+   */
+  public boolean isReady(String skill) {
+    final int stored =
+        inventory.getChallengeCount(skill) - writeBehindStore.getPendingChallenges(skill);
+    return stored >= skillProcessor.getWarmThreshold();
+  }
+
+  /**
+   * Returns a future completed once the skill is ready, or once its generation completed and the
+   * generated challenges are stored. The future fails with the generation.
+   *
+   * @param skill the skill.
+   * @param generation the generation of the skill, completed if nothing is generated.
+   * @return the {@link CompletableFuture}.
+   */
+  public CompletableFuture<Void> whenReady(String skill, CompletableFuture<?> generation) {
+    if (isReady(skill)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final Watcher watcher = new Watcher(skill);
+    watchers.compute(
+        SkillInventory.normalize(skill),
+        (key, current) -> {
+          final Set<Watcher> set = current != null ? current : ConcurrentHashMap.newKeySet();
+          set.add(watcher);
+          return set;
+        });
+    generation.whenComplete(
+        (result, ex) -> {
+          if (ex != null) {
+            remove(watcher);
+            watcher.ready.completeExceptionally(ex);
+          } else {
+            watcher.generated = true;
+            check(watcher);
+          }
+        });
+    check(watcher);
+    return watcher.ready;
+  }
+
+  private void check(Collection<String> skills, boolean stored) {
+    for (String skill : skills) {
+      final Set<Watcher> waiting = watchers.get(skill);
+      if (waiting == null) {
+        continue;
+      }
+      for (Watcher watcher : waiting) {
+        if (stored || isReady(skill)) {
+          check(watcher);
+        } else {
+          remove(watcher);
+          watcher.ready.completeExceptionally(
+              new IllegalStateException("Challenges of " + skill + " could not be stored"));
+        }
+      }
+    }
+  }
+
+  private void check(Watcher watcher) {
+    if (watcher.ready.isDone()) {
+      return;
+    }
+    if (isReady(watcher.skill)
+        || watcher.generated && writeBehindStore.getPendingChallenges(watcher.skill) == 0) {
+      remove(watcher);
+      watcher.ready.complete(null);
+    }
+  }
+
+  private void remove(Watcher watcher) {
+    watchers.computeIfPresent(
+        SkillInventory.normalize(watcher.skill),
+        (key, set) -> {
+          set.remove(watcher);
+          return set.isEmpty() ? null : set;
+        });
+  }
+
+  /** A request waiting for a skill. */
+  private static final class Watcher {
+
+    private final String skill;
+
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    private volatile boolean generated;
+
+    private Watcher(String skill) {
+      this.skill = skill;
+    }
+  }
+}
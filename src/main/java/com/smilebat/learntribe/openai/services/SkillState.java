@@ -0,0 +1,19 @@
+package com.smilebat.learntribe.openai.services;
+
+/**
+ * Progress of the challenge generation of a skill.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+public enum SkillState {
+  /** Requested, generation has not started yet. */
+  QUEUED,
+  /** Challenges are being generated. */
+  GENERATING,
+  /** Generation completed, or the skill was warm already. */
+  DONE,
+  /** Generation or publishing of the request failed. */
+  FAILED
+}
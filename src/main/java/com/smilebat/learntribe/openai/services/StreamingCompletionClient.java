@@ -0,0 +1,138 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams open ai text completions as server sent events.
+ *
+ * <p>Text is handed to the sink as the tokens arrive instead of once the completion is done. The
+ * sink may stop the stream, which closes the connection so that open ai stops generating. Calls
+ * pass through the {@link CompletionGovernor} like every other open ai call and use the client and
+ * settings of the {@link OpenAiEndpoint}.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StreamingCompletionClient {
+
+  private static final String DATA = "data:";
+
+  private static final String DONE = "[DONE]";
+
+  private static final String STREAM_METRIC = "openai.completion.stream";
+
+  private final ObjectMapper mapper;
+
+  private final CompletionGovernor governor;
+
+  private final MeterRegistry registry;
+
+  private final OpenAiEndpoint endpoint;
+
+  /**
+   * Streams the completion of the prompt.
+   *
+   * @param prompt the prompt.
+   * @param choices the number of choices.
+   * @param sink receives the index of the choice and the next chunk of its text, returns false to
+   *     stop the stream.
+   * @return true if the completion was streamed to the end, false if the sink stopped it.
+   */
+  public boolean stream(String prompt, int choices, BiPredicate<Integer, String> sink) {
+    final HttpRequest request =
+        endpoint.newRequest(getBody(prompt, choices)).header("Accept", "text/event-stream").build();
+    final Timer.Sample sample = Timer.start(registry);
+    String result = "failure";
+    try {
+      final boolean finished = governor.execute(() -> send(request, sink));
+      result = finished ? "success" : "cancelled";
+      return finished;
+    } finally {
+      sample.stop(Timer.builder(STREAM_METRIC).tag("result", result).register(registry));
+    }
+  }
+
+  private boolean send(HttpRequest request, BiPredicate<Integer, String> sink) {
+    final HttpResponse<Stream<String>> response;
+    try {
+      response = endpoint.getHttpClient().send(request, HttpResponse.BodyHandlers.ofLines());
+    } catch (IOException ex) {
+      throw new IllegalStateException("Unable to stream open ai completion", ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while streaming open ai completion", ex);
+    }
+    try (Stream<String> lines = response.body()) {
+      if (response.statusCode() != 200) {
+        throw new OpenAiHttpException(
+            response.statusCode(), lines.collect(Collectors.joining("\n")));
+      }
+      final Iterator<String> iterator = lines.iterator();
+      while (iterator.hasNext()) {
+        final String line = iterator.next();
+        if (!line.startsWith(DATA)) {
+          continue;
+        }
+        final String data = line.substring(DATA.length()).trim();
+        if (DONE.equals(data)) {
+          return true;
+        }
+        if (!accept(data, sink)) {
+          log.info("Open ai stream stopped by the consumer");
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean accept(String data, BiPredicate<Integer, String> sink) {
+    final JsonNode event;
+    try {
+      event = mapper.readTree(data);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("Unable to read open ai event " + data, ex);
+    }
+    for (JsonNode choice : event.path("choices")) {
+      final String text = choice.path("text").asText("");
+      if (!text.isEmpty() && !sink.test(choice.path("index").asInt(0), text)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String getBody(String prompt, int choices) {
+    final Map<String, Object> body = new LinkedHashMap<>();
+    body.put("model", endpoint.getModel());
+    body.put("prompt", prompt);
+    body.put("max_tokens", endpoint.getMaxTokens());
+    body.put("n", choices);
+    body.put("stream", true);
+    try {
+      return mapper.writeValueAsString(body);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalArgumentException("Unable to encode open ai request", ex);
+    }
+  }
+}
@@ -1,18 +1,20 @@
 package com.smilebat.learntribe.openai.services;
 
-import com.smilebat.learntribe.dataaccess.ProfileSummaryRepository;
 import com.smilebat.learntribe.dataaccess.jpa.entity.ProfileSummary;
 import com.smilebat.learntribe.kafka.KafkaProfileRequest;
-import com.smilebat.learntribe.learntribeclients.openai.OpenAiService;
-import com.smilebat.learntribe.openai.OpenAiRequest;
-import com.smilebat.learntribe.openai.response.Choice;
-import com.smilebat.learntribe.openai.response.OpenAiResponse;
+import com.smilebat.learntribe.openai.services.helpers.SingleFlight;
+import com.smilebat.learntribe.openai.services.helpers.SummaryParser;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.util.StringUtils;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -31,9 +33,27 @@ import org.springframework.stereotype.Service;
 @Service
 public class SummaryFactory {
 
-  private final OpenAiService openAiService;
+  private static final int SUMMARIES_PER_CHOICE = 2;
 
-  private final ProfileSummaryRepository repository;
+  private static final int TOKENS_PER_SUMMARY = 80;
+
+  private static final String PARSE_METRIC = "openai.parse";
+
+  private final CompletionService completionService;
+
+  private final WriteBehindStore writeBehindStore;
+
+  private final SkillInventory inventory;
+
+  private final SummaryParser summaryParser;
+
+  private final GenerationBudgetPolicy budgetPolicy;
+
+  private final MeterRegistry registry;
+
+  private final PriorityScheduler scheduler;
+
+  private final SingleFlight<String> summaryFlights = new SingleFlight<>();
 
   @Value("${feature.maxsummary}")
   private Integer maxSummaryCap;
@@ -41,51 +61,157 @@ public class SummaryFactory {
   @Value("${feature.openai}")
   private boolean openAiFeature;
 
+  @Value("${feature.summary.choices:3}")
+  private int choices;
+
   /**
    * Loads summaries.
    *
+   * <p>Every call asks open ai for {@code feature.summary.choices} choices and keeps the summaries
+   * of all of them. Only the first completion of a role and skill may be served from the
+   * completion cache, summaries already produced in this call are not stored twice and generation
+   * stops once a call adds none. Every role and skill is generated within a {@link
+   * GenerationBudget}, switching to a more explicit prompt once the parse yield drops. Concurrent
+   * requests for the same role and skill join the generation in flight instead of starting their
+   * own. Every role and skill, and every suggestion, runs as its own {@link WorkClass#SUMMARY}
+   * task on the {@link PriorityScheduler}, behind waiting assessments. The calling thread waits for
+   * them, no scheduler worker is held waiting for another generation.
+   *
    * @param request the {@link KafkaProfileRequest}
    */
   public void createSummaries(KafkaProfileRequest request) {
     List<String> skills = request.getSkills();
     String role = request.getRole();
+    Set<String> produced = ConcurrentHashMap.newKeySet();
 
     if (skills != null && !skills.isEmpty()) {
-      for (String skill : skills) {
-        final int count = repository.countByRoleAndSkill(role, skill);
-        extracted(role, skill, count);
-      }
-      skills.stream().map(sk -> suggestSummaries(role, sk)).forEach(repository::saveAll);
+      skills.forEach(skill -> inventory.recordSummaryRequest(role, skill));
+      join(skills.stream().map(skill -> generate(role + "|" + skill, role, skill, produced)));
+      join(
+          skills
+              .stream()
+              .map(
+                  skill ->
+                      scheduler.execute(
+                          WorkClass.SUMMARY,
+                          () ->
+                              saveSummaries(
+                                  role, skill, suggestSummaries(role, skill, produced)))));
     } else {
-      final int count = repository.countByRole(role);
-      extracted(role, null, count);
+      inventory.recordSummaryRequest(role, null);
+      generate(role, role, null, produced).join();
     }
   }
 
-  private void extracted(String role, String skill, int count) {
+  private CompletableFuture<Void> generate(
+      String key, String role, String skill, Set<String> produced) {
+    return summaryFlights.executeAsync(
+        key, () -> scheduler.execute(WorkClass.SUMMARY, () -> extracted(role, skill, produced)));
+  }
+
+  private static void join(Stream<CompletableFuture<Void>> futures) {
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+  }
+
+  /**
+   * Tops up the summaries of the role and skill, unless they are already being generated.
+   *
+   * @param role the role.
+   * @param skill the skill, may be null.
+   * @return true if the summaries were generated.
+   */
+  public boolean replenish(String role, String skill) {
+    final String key = skill == null ? role : role + "|" + skill;
+    return summaryFlights.tryExecute(key, () -> extracted(role, skill, new HashSet<>()));
+  }
+
+  /**
+   * Checks if the role and skill hold the maximum number of summaries.
+   *
+   * @param role the role.
+   * @param skill the skill, may be null.
+   * @return true if no summaries are missing.
+   */
+  public boolean isAtCap(String role, String skill) {
+    return inventory.getSummaryCount(role, skill) >= maxSummaryCap;
+  }
+
+  private void extracted(String role, String skill, Set<String> produced) {
+    final int count = inventory.getSummaryCount(role, skill);
     int requiredSummaries = 0;
     if (count < maxSummaryCap) {
       requiredSummaries = maxSummaryCap - count;
     }
+    if (requiredSummaries == 0) {
+      return;
+    }
+    final GenerationBudget budget = budgetPolicy.newBudget(PromptType.SUMMARY);
+    final int requested = choices * SUMMARIES_PER_CHOICE;
     int totalSummaries = 0;
-    while (totalSummaries < requiredSummaries) {
-      Set<ProfileSummary> profileSummaries = suggestSummaries(role, skill);
-      repository.saveAll(profileSummaries);
-      totalSummaries++;
+    while (totalSummaries < requiredSummaries && !budget.isExhausted()) {
+      final MultiChoiceRequest request = createOpenAiRequest(role, skill, budget.isEscalated());
+      if (!budget.tryAttempt(
+          GenerationBudget.estimateTokens(request.getPrompt(), requested * TOKENS_PER_SUMMARY))) {
+        break;
+      }
+      final Set<String> summaries;
+      try {
+        /* only the first call of the job may be answered from the cache, later calls want more */
+        final boolean useCache = budget.getAttempts() == 1;
+        summaries =
+            parseSummaries(completionService.complete(PromptType.SUMMARY, request, useCache));
+      } catch (RuntimeException ex) {
+        budget.recordFailure();
+        log.info("Open ai summary completion failed for {} {}", role, skill, ex);
+        continue;
+      }
+      budget.recordYield(requested, summaries.size());
+      Set<ProfileSummary> profileSummaries =
+          getProcessedSummaries(role, skill, summaries, produced);
+      if (profileSummaries.isEmpty()) {
+        if (!summaries.isEmpty()) {
+          budget.exhaust("noprogress");
+        }
+        continue;
+      }
+      saveSummaries(role, skill, profileSummaries);
+      totalSummaries += profileSummaries.size();
+    }
+    final String outcome = budget.finish(totalSummaries >= requiredSummaries);
+    if (totalSummaries < requiredSummaries) {
+      log.info(
+          "Abandoned summary generation for {} {} with {} of {} summaries ({})",
+          role,
+          skill,
+          totalSummaries,
+          requiredSummaries,
+          outcome);
     }
   }
 
-  private Set<ProfileSummary> suggestSummaries(String role, String skill) {
-    final String text = getOpenAiSuggestions(role, skill);
-    Set<String> summaries = parseCompletedText(text);
-    return getProcessedSummaries(role, skill, summaries);
+  private void saveSummaries(String role, String skill, Set<ProfileSummary> profileSummaries) {
+    writeBehindStore.addSummaries(role, skill, profileSummaries);
+  }
+
+  private Set<ProfileSummary> suggestSummaries(String role, String skill, Set<String> produced) {
+    final List<String> texts = getOpenAiSuggestions(role, skill);
+    return getProcessedSummaries(role, skill, parseSummaries(texts), produced);
+  }
+
+  private Set<String> parseSummaries(List<String> texts) {
+    Set<String> summaries = new LinkedHashSet<>();
+    registry
+        .timer(PARSE_METRIC, "type", PromptType.SUMMARY.getType())
+        .record(() -> texts.forEach(text -> summaries.addAll(summaryParser.parseText(text))));
+    return summaries;
   }
 
   private Set<ProfileSummary> getProcessedSummaries(
-      String userCurrentRole, String skill, Set<String> summaries) {
+      String userCurrentRole, String skill, Set<String> summaries, Set<String> produced) {
     return summaries
         .stream()
         .filter(StringUtils::isNotEmpty)
+        .filter(produced::add)
         .map(summary -> createProfileSummary(userCurrentRole, skill, summary))
         .collect(Collectors.toSet());
   }
@@ -112,13 +238,11 @@ public class SummaryFactory {
    *
    * @param userCurrentRole the User current role.
    * @param skill the user skill.
-   * @return the {@link String}.
+   * @return the text of every choice.
    */
-  private String getOpenAiSuggestions(String userCurrentRole, String skill) {
-    OpenAiRequest request = createOpenAiRequest(userCurrentRole, skill);
-    OpenAiResponse completions = openAiService.getCompletions(request);
-    final Choice choice = completions.getChoices().get(0);
-    return choice.getText();
+  private List<String> getOpenAiSuggestions(String userCurrentRole, String skill) {
+    MultiChoiceRequest request = createOpenAiRequest(userCurrentRole, skill, false);
+    return completionService.complete(PromptType.SUMMARY, request, false);
   }
 
   /**
@@ -126,39 +250,19 @@ public class SummaryFactory {
    *
    * @param role the role of user {@link String}.
    * @param skill the skill of user {@link String}.
-   * @return the {@link OpenAiRequest}.
+   * @param fallback whether to use the more explicit fallback prompt.
+   * @return the {@link MultiChoiceRequest}.
    */
-  private OpenAiRequest createOpenAiRequest(String role, String skill) {
+  private MultiChoiceRequest createOpenAiRequest(String role, String skill, boolean fallback) {
     String prompt = "Create 2 Good Profile Summaries for " + role + " who is skilled in " + skill;
     if (skill == null) {
       prompt = "Create 2 Good Profile Summaries for " + role;
     }
-    OpenAiRequest request = new OpenAiRequest();
-    request.setPrompt(prompt);
+    if (fallback) {
+      prompt = prompt + ". Write every summary on its own numbered line";
+    }
+    MultiChoiceRequest request = MultiChoiceRequest.of(prompt, choices);
     request.setTemperature(0.9f);
     return request;
   }
-
-  /**
-   * Parses the text completion for query extractions.
-   *
-   * @param str the completed open ai text.
-   * @return Set of String.
-   */
-  private Set<String> parseCompletedText(String str) {
-    String[] arr = str.split("\n");
-    Set<String> summaries = new HashSet<>(3);
-    int index = 1;
-    int arrLen = arr.length;
-    while (index < arrLen) {
-      while (arr[index].isBlank()) {
-        index += 1;
-      }
-      String inputText = arr[index].trim();
-      inputText = inputText.replaceAll("[0-9]. ", "");
-      summaries.add(inputText);
-      index++;
-    }
-    return summaries;
-  }
 }
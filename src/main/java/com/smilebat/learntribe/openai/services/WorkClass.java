@@ -0,0 +1,25 @@
+package com.smilebat.learntribe.openai.services;
+
+import lombok.Getter;
+
+/**
+ * Classes of open ai bound work, from the most to the least urgent.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+public enum WorkClass {
+  /** Skills of assessment requests with assignees waiting for them. */
+  ASSESSMENT("assessment"),
+  /** Profile summaries. */
+  SUMMARY("summary"),
+  /** Background refills and requests nobody waits for. */
+  REFILL("refill");
+
+  @Getter private final String type;
+
+  WorkClass(String type) {
+    this.type = type;
+  }
+}
@@ -0,0 +1,421 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.smilebat.learntribe.dataaccess.ChallengeRepository;
+import com.smilebat.learntribe.dataaccess.ProfileSummaryRepository;
+import com.smilebat.learntribe.dataaccess.jpa.entity.Challenge;
+import com.smilebat.learntribe.dataaccess.jpa.entity.ProfileSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write behind stage for generated challenges and summaries.
+ *
+ * <p>The factories hand over their entities and move on, the entities are inserted in batches of
+ * {@code feature.writebehind.batchsize}, each in its own transaction, once a batch is full or every
+ * {@code feature.writebehind.interval} ms, on the scheduler threads, never on the thread handing
+ * them over. A failed batch is retried up to {@code feature.writebehind.retries} times, waiting
+ * {@code feature.writebehind.retrydelay} ms doubled with every retry, before it is dropped. Its ids
+ * are cleared before a retry, so that it is inserted again rather than merged with the ids of the
+ * rolled back transaction. The {@link SkillInventory} counts the entities when they are handed over
+ * and takes them back if their batch is dropped, the {@link ChallengeDeduplicator} forgets the
+ * questions of dropped challenges. Pending entities are flushed on shutdown, failed batches still
+ * after their delays. Challenges still pending, retries included, are counted per skill, the
+ * challenge listeners learn about the skills of every batch once it is stored or dropped, and which
+ * of both it was.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WriteBehindStore {
+
+  private static final String METRIC = "openai.writebehind";
+
+  private final ChallengeRepository challengeRepository;
+
+  private final ProfileSummaryRepository summaryRepository;
+
+  private final SkillInventory inventory;
+
+  private final ChallengeDeduplicator deduplicator;
+
+  private final PlatformTransactionManager transactionManager;
+
+  private final TaskScheduler taskScheduler;
+
+  private final MeterRegistry registry;
+
+  @Value("${feature.writebehind.batchsize:50}")
+  private int batchSize;
+
+  @Value("${feature.writebehind.capacity:10000}")
+  private int capacity;
+
+  @Value("${feature.writebehind.blocktimeout:5000}")
+  private long blockTimeout;
+
+  @Value("${feature.writebehind.retries:3}")
+  private int maxRetries;
+
+  @Value("${feature.writebehind.retrydelay:1000}")
+  private long retryDelay;
+
+  private BlockingQueue<Challenge> challenges;
+
+  private BlockingQueue<ProfileSummary> summaries;
+
+  private TransactionTemplate transactionTemplate;
+
+  private final ConcurrentMap<String, AtomicInteger> pendingChallenges = new ConcurrentHashMap<>();
+
+  private final List<BiConsumer<Set<String>, Boolean>> challengeListeners =
+      new CopyOnWriteArrayList<>();
+
+  private final Deque<FailedBatch<Challenge>> challengeRetries = new ArrayDeque<>();
+
+  private final Deque<FailedBatch<ProfileSummary>> summaryRetries = new ArrayDeque<>();
+
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+  /** Creates the buffers and the transaction template. */
+  @PostConstruct
+  public void init() {
+    challenges = new LinkedBlockingQueue<>(capacity);
+    summaries = new LinkedBlockingQueue<>(capacity);
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    registry.gauge(METRIC + ".pending", Tags.of("type", "mcq"), challenges, Collection::size);
+    registry.gauge(METRIC + ".pending", Tags.of("type", "summary"), summaries, Collection::size);
+  }
+
+  /**
+   * Hands over challenges of the skill for storage.
+   *
+   * @param skill the skill.
+   * @param generated the challenges.
+   */
+  public void addChallenges(String skill, Collection<Challenge> generated) {
+    inventory.addChallenges(skill, generated.size());
+    addPendingChallenges(skill, generated.size());
+    final int enqueued = enqueue(challenges, generated);
+    final int rejected = generated.size() - enqueued;
+    if (rejected > 0) {
+      inventory.addChallenges(skill, -rejected);
+      addPendingChallenges(skill, -rejected);
+      deduplicator.release(skill, generated.stream().skip(enqueued).collect(Collectors.toList()));
+      throw new IllegalStateException("Unable to buffer " + rejected + " challenges");
+    }
+    if (challenges.size() >= batchSize) {
+      requestFlush();
+    }
+  }
+
+  /**
+   * Hands over summaries of the role and skill for storage.
+   *
+   * @param role the role.
+   * @param skill the skill, may be null.
+   * @param generated the summaries.
+   */
+  public void addSummaries(String role, String skill, Collection<ProfileSummary> generated) {
+    inventory.addSummaries(role, skill, generated.size());
+    final int rejected = generated.size() - enqueue(summaries, generated);
+    if (rejected > 0) {
+      inventory.addSummaries(role, skill, -rejected);
+      throw new IllegalStateException("Unable to buffer " + rejected + " summaries");
+    }
+    if (summaries.size() >= batchSize) {
+      requestFlush();
+    }
+  }
+
+  /**
+   * Returns the number of challenges of the skill handed over but not stored yet.
+   *
+   * @param skill the skill.
+   * @return the count.
+   */
+  public int getPendingChallenges(String skill) {
+    final AtomicInteger count = pendingChallenges.get(SkillInventory.normalize(skill));
+    return count != null ? count.get() : 0;
+  }
+
+  /**
+   * Registers a listener receiving the normalized skills of every challenge batch once it is
+   * stored or dropped, along with true if it was stored. Listeners run on the flushing thread and
+   * must not block.
+   *
+   * @param listener the listener.
+   */
+  public void addChallengeListener(BiConsumer<Set<String>, Boolean> listener) {
+    challengeListeners.add(listener);
+  }
+
+  /** Flushes the pending entities and the failed batches due for a retry. */
+  @Scheduled(fixedDelayString = "${feature.writebehind.interval:500}")
+  public void flush() {
+    flushChallenges();
+    flushSummaries();
+  }
+
+  /** Flushes the pending entities and the failed batches, waiting for their retries. */
+  @PreDestroy
+  public void drain() {
+    log.info("Draining {} challenges and {} summaries", challenges.size(), summaries.size());
+    flush();
+    long delay;
+    while ((delay = getNextRetryDelay()) >= 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(delay);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        log.info("Drain interrupted, failed batches are not retried");
+        return;
+      }
+      flush();
+    }
+  }
+
+  private void requestFlush() {
+    if (!flushRequested.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      taskScheduler.schedule(
+          () -> {
+            flushRequested.set(false);
+            flush();
+          },
+          Instant.now());
+    } catch (RejectedExecutionException ex) {
+      /* shutting down, the drain stores the batch */
+      flushRequested.set(false);
+    }
+  }
+
+  private synchronized long getNextRetryDelay() {
+    final long now = System.nanoTime();
+    return Stream.<FailedBatch<?>>concat(challengeRetries.stream(), summaryRetries.stream())
+        .mapToLong(failed -> Math.max(0, failed.retryAt - now))
+        .min()
+        .orElse(-1);
+  }
+
+  private synchronized void flushChallenges() {
+    for (FailedBatch<Challenge> failed : pollRetries(challengeRetries)) {
+      storeChallenges(failed.entities, failed.attempts);
+    }
+    List<Challenge> batch = new ArrayList<>(batchSize);
+    while (challenges.drainTo(batch, batchSize) > 0) {
+      storeChallenges(batch, 0);
+      batch = new ArrayList<>(batchSize);
+    }
+  }
+
+  private synchronized void flushSummaries() {
+    for (FailedBatch<ProfileSummary> failed : pollRetries(summaryRetries)) {
+      storeSummaries(failed.entities, failed.attempts);
+    }
+    List<ProfileSummary> batch = new ArrayList<>(batchSize);
+    while (summaries.drainTo(batch, batchSize) > 0) {
+      storeSummaries(batch, 0);
+      batch = new ArrayList<>(batchSize);
+    }
+  }
+
+  private void storeChallenges(List<Challenge> batch, int attempts) {
+    final Outcome outcome =
+        store(
+            "mcq",
+            batch,
+            attempts,
+            challengeRepository::saveAll,
+            challenge -> challenge.setId(null),
+            challengeRetries);
+    if (outcome == Outcome.RETRYING) {
+      return;
+    }
+    if (outcome == Outcome.DROPPED) {
+      batch
+          .stream()
+          .collect(Collectors.groupingBy(Challenge::getSkill))
+          .forEach(
+              (skill, dropped) -> {
+                inventory.addChallenges(skill, -dropped.size());
+                deduplicator.release(skill, dropped);
+              });
+    }
+    onChallengesFlushed(batch, outcome == Outcome.STORED);
+  }
+
+  private void storeSummaries(List<ProfileSummary> batch, int attempts) {
+    final Outcome outcome =
+        store(
+            "summary",
+            batch,
+            attempts,
+            summaryRepository::saveAll,
+            summary -> summary.setId(null),
+            summaryRetries);
+    if (outcome == Outcome.DROPPED) {
+      batch.forEach(
+          summary -> inventory.addSummaries(summary.getRole(), summary.getSkill(), -1));
+    }
+  }
+
+  /**
+   * Stores the batch in its own transaction, queueing it for a retry if that fails.
+   *
+   * @param type the entity type tag.
+   * @param batch the entities.
+   * @param attempts the failed attempts of the batch so far.
+   * @param save saves the entities.
+   * @param clearId clears the id the failed transaction assigned to an entity.
+   * @param retries the batches waiting for a retry.
+   * @param <T> the entity type.
+   * @return the {@link Outcome}.
+   */
+  private <T> Outcome store(
+      String type,
+      List<T> batch,
+      int attempts,
+      Consumer<List<T>> save,
+      Consumer<T> clearId,
+      Deque<FailedBatch<T>> retries) {
+    final Timer.Sample sample = Timer.start(registry);
+    try {
+      transactionTemplate.executeWithoutResult(status -> save.accept(batch));
+      record(sample, type, Outcome.STORED);
+      return Outcome.STORED;
+    } catch (RuntimeException ex) {
+      if (attempts < maxRetries) {
+        final long delay = retryDelay << attempts;
+        log.info("Unable to store {} {} entities, retrying in {} ms", batch.size(), type, delay);
+        batch.forEach(clearId);
+        retries.addLast(
+            new FailedBatch<>(batch, attempts + 1, System.nanoTime() + delay * 1_000_000L));
+        record(sample, type, Outcome.RETRYING);
+        return Outcome.RETRYING;
+      }
+      log.info("Dropping {} {} entities after {} attempts", batch.size(), type, attempts + 1, ex);
+      record(sample, type, Outcome.DROPPED);
+      return Outcome.DROPPED;
+    }
+  }
+
+  private static <T> List<FailedBatch<T>> pollRetries(Deque<FailedBatch<T>> retries) {
+    final long now = System.nanoTime();
+    final List<FailedBatch<T>> due = new ArrayList<>();
+    for (Iterator<FailedBatch<T>> iterator = retries.iterator(); iterator.hasNext(); ) {
+      final FailedBatch<T> failed = iterator.next();
+      if (failed.retryAt - now <= 0) {
+        iterator.remove();
+        due.add(failed);
+      }
+    }
+    return due;
+  }
+
+  private void onChallengesFlushed(List<Challenge> batch, boolean stored) {
+    final Set<String> skills = new HashSet<>();
+    for (Challenge challenge : batch) {
+      final String skill = SkillInventory.normalize(challenge.getSkill());
+      addPendingChallenges(skill, -1);
+      skills.add(skill);
+    }
+    for (BiConsumer<Set<String>, Boolean> listener : challengeListeners) {
+      try {
+        listener.accept(skills, stored);
+      } catch (RuntimeException ex) {
+        log.info("Challenge listener failed", ex);
+      }
+    }
+  }
+
+  private void addPendingChallenges(String skill, int count) {
+    pendingChallenges
+        .computeIfAbsent(SkillInventory.normalize(skill), k -> new AtomicInteger())
+        .addAndGet(count);
+  }
+
+  private void record(Timer.Sample sample, String type, Outcome outcome) {
+    sample.stop(
+        Timer.builder(METRIC + ".flush")
+            .tag("type", type)
+            .tag("result", outcome.getResult())
+            .register(registry));
+  }
+
+  private <T> int enqueue(BlockingQueue<T> queue, Collection<T> entities) {
+    int enqueued = 0;
+    try {
+      for (T entity : entities) {
+        if (!queue.offer(entity, blockTimeout, TimeUnit.MILLISECONDS)) {
+          log.info("Write behind buffer is full");
+          break;
+        }
+        enqueued++;
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    return enqueued;
+  }
+
+  /** Result of storing a batch. */
+  @Getter
+  @RequiredArgsConstructor
+  private enum Outcome {
+    STORED("success"),
+    RETRYING("retry"),
+    DROPPED("failure");
+
+    private final String result;
+  }
+
+  /** A batch waiting for its retry. */
+  @RequiredArgsConstructor
+  private static final class FailedBatch<T> {
+    private final List<T> entities;
+    private final int attempts;
+    private final long retryAt;
+  }
+}
@@ -1,8 +1,6 @@
 package com.smilebat.learntribe.openai.services.helpers;
 
 import com.smilebat.learntribe.dataaccess.jpa.entity.Challenge;
-import io.micrometer.core.instrument.util.StringUtils;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import lombok.ToString;
@@ -68,7 +66,7 @@ public class AbstractChallenge {
         setAnswer(input);
         break;
       case OPTIONS:
-        evaluateOptions(input);
+        evaluateOptions(input, 0, input.length());
         break;
       default:
         break;
@@ -76,20 +74,75 @@ public class AbstractChallenge {
   }
 
   /**
-   * Sets the options.
+   * Sets the text between start and end based on the pattern. The text is only copied for the
+   * parts that are retained.
    *
-   * @param input the {@link String} input text.
+   * @param type the {@link ChallengePattern} of the input text
+   * @param text the {@link CharSequence} holding the trimmed line.
+   * @param start the start index, inclusive.
+   * @param end the end index, exclusive.
+   */
+  public void selectAbstraction(ChallengePattern type, CharSequence text, int start, int end) {
+    switch (type) {
+      case QUESTION:
+        setQuestion(text.subSequence(start, end).toString());
+        break;
+      case ANSWER:
+        setAnswer(text.subSequence(start, end).toString());
+        break;
+      case OPTIONS:
+        evaluateOptions(text, start, end);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Sets the options. The text is split around option markers such as {@code a.} or {@code B)}.
+   *
+   * @param text the {@link CharSequence} input text.
+   * @param start the start index, inclusive.
+   * @param end the end index, exclusive.
    */
-  private void evaluateOptions(String input) {
-    Arrays.stream(input.split("[a-zA-Z][.)]"))
-        .filter(StringUtils::isNotBlank)
-        .map(String::trim)
-        .forEach(loptions::add);
+  private void evaluateOptions(CharSequence text, int start, int end) {
+    int segmentStart = start;
+    int index = start;
+    while (index < end - 1) {
+      if (ChallengePattern.isLetter(text.charAt(index))
+          && ChallengePattern.isOptionMarker(text.charAt(index + 1))) {
+        addOption(text, segmentStart, index);
+        index += 2;
+        segmentStart = index;
+      } else {
+        index++;
+      }
+    }
+    addOption(text, segmentStart, end);
     if (loptions.size() > 2) {
       this.parsedOptions = true;
     }
   }
 
+  /**
+   * Adds the trimmed text between start and end as an option, if not blank.
+   *
+   * @param text the {@link CharSequence} input text.
+   * @param start the start index, inclusive.
+   * @param end the end index, exclusive.
+   */
+  private void addOption(CharSequence text, int start, int end) {
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    if (start < end) {
+      loptions.add(text.subSequence(start, end).toString());
+    }
+  }
+
   /**
    * Creates a fresh challenge from abstract
    *
@@ -0,0 +1,103 @@
+package com.smilebat.learntribe.openai.services.helpers;
+
+import com.smilebat.learntribe.dataaccess.jpa.entity.Challenge;
+import java.util.function.Predicate;
+
+/**
+ * Incremental parser for open ai text arriving in chunks.
+ *
+ * <p>Complete lines are parsed as soon as they arrive and every challenge is handed to the sink
+ * once its answer line is complete. Only the trailing partial line of a chunk is buffered. The
+ * session is cancelled once the sink rejects a challenge, further text is ignored.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+public class ChallengeParserSession {
+
+  private final Predicate<Challenge> sink;
+
+  private final StringBuilder partialLine = new StringBuilder();
+
+  private AbstractChallenge abstractChallenge = new AbstractChallenge();
+
+  private boolean cancelled;
+
+  /**
+   * Creates a session.
+   *
+   * @param sink receives every parsed {@link Challenge}, returns false to cancel the session.
+   */
+  public ChallengeParserSession(Predicate<Challenge> sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Parses the complete lines of the chunk.
+   *
+   * @param chunk the next chunk of text.
+   * @return false if the session is cancelled.
+   */
+  public boolean accept(CharSequence chunk) {
+    final int length = chunk.length();
+    int lineStart = 0;
+    for (int i = 0; i < length && !cancelled; i++) {
+      if (chunk.charAt(i) != '\n') {
+        continue;
+      }
+      if (partialLine.length() > 0) {
+        partialLine.append(chunk, lineStart, i);
+        parseLine(partialLine, 0, partialLine.length());
+        partialLine.setLength(0);
+      } else {
+        parseLine(chunk, lineStart, i);
+      }
+      lineStart = i + 1;
+    }
+    if (!cancelled && lineStart < length) {
+      partialLine.append(chunk, lineStart, length);
+    }
+    return !cancelled;
+  }
+
+  /**
+   * Parses the last line once the text is complete.
+   *
+   * @return false if the session is cancelled.
+   */
+  public boolean finish() {
+    if (!cancelled && partialLine.length() > 0) {
+      parseLine(partialLine, 0, partialLine.length());
+      partialLine.setLength(0);
+    }
+    return !cancelled;
+  }
+
+  /**
+   * Checks if the sink cancelled the session.
+   *
+   * @return true if cancelled.
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  private void parseLine(CharSequence text, int start, int end) {
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    if (start == end) {
+      return;
+    }
+    abstractChallenge.selectAbstraction(
+        ChallengePattern.evaluate(text, start, end), text, start, end);
+    if (abstractChallenge.isChallengeParsed()) {
+      cancelled = !sink.test(abstractChallenge.getChallenge());
+      abstractChallenge = new AbstractChallenge();
+    }
+  }
+}
@@ -24,12 +24,23 @@ public enum ChallengePattern {
     this.type = type;
   }
 
+  /*
+   * Reference definitions of the line types. evaluate() implements the same matches in a single
+   * pass without running the patterns.
+   */
   public static final Pattern questionPattern = Pattern.compile("[0-9].*[?]"); // find the questions
   public static final Pattern answerPattern =
       Pattern.compile("[aA][n][s][w][e][r][:] [a-zA-Z]"); // find the answers
 
   public static final Pattern optionsPattern = Pattern.compile("[a-zA-Z][.)]");
 
+  private static final String END_MARKER = "*end*";
+
+  private static final String ANSWER_SUFFIX = "nswer: ";
+
+  /* 'a' or 'A', the suffix, then a letter */
+  private static final int ANSWER_LENGTH = ANSWER_SUFFIX.length() + 2;
+
   /**
    * Evaluates the {@link ChallengePattern} of input text.
    *
@@ -37,18 +48,107 @@ public enum ChallengePattern {
    * @return the {@link ChallengePattern}.
    */
   public static ChallengePattern evaluate(String subText) {
-    if (questionPattern.matcher(subText).find()) {
-      return ChallengePattern.QUESTION;
+    return evaluate(subText, 0, subText.length());
+  }
+
+  /**
+   * Evaluates the {@link ChallengePattern} of the text between start and end.
+   *
+   * <p>The line is classified in one left to right pass, every position is probed for the start
+   * of an answer, option or end marker with a bounded look ahead. A question has the highest
+   * precedence and returns as soon as a {@code ?} follows a digit, the remaining types are decided
+   * at the end of the line in the order answer, options, end marker.
+   *
+   * @param text the {@link CharSequence} holding the line.
+   * @param start the start index, inclusive.
+   * @param end the end index, exclusive.
+   * @return the {@link ChallengePattern}.
+   */
+  public static ChallengePattern evaluate(CharSequence text, int start, int end) {
+    boolean digitSeen = false;
+    boolean answer = false;
+    boolean options = false;
+    boolean raw = false;
+    for (int index = start; index < end; index++) {
+      final char ch = text.charAt(index);
+      if (ch >= '0' && ch <= '9') {
+        digitSeen = true;
+      } else if (ch == '?') {
+        if (digitSeen) {
+          return ChallengePattern.QUESTION;
+        }
+      } else if (isLetter(ch)) {
+        if (!options && index + 1 < end && isOptionMarker(text.charAt(index + 1))) {
+          options = true;
+        }
+        if (!answer && (ch == 'a' || ch == 'A') && isAnswerAt(text, index, end)) {
+          answer = true;
+        }
+      } else if (ch == '*') {
+        if (!raw && index + END_MARKER.length() <= end && regionMatches(text, index, END_MARKER)) {
+          raw = true;
+        }
+      } else if (isLineTerminator(ch)) {
+        /* '.' in the question pattern does not cross line terminators */
+        digitSeen = false;
+      }
     }
-    if (answerPattern.matcher(subText).find()) {
+    if (answer) {
       return ChallengePattern.ANSWER;
     }
-    if (optionsPattern.matcher(subText).find()) {
+    if (options) {
       return ChallengePattern.OPTIONS;
     }
-    if (subText.contains("*end*")) {
+    if (raw) {
       return ChallengePattern.RAW;
     }
     return ChallengePattern.TEXT;
   }
+
+  private static boolean isAnswerAt(CharSequence text, int index, int end) {
+    return index + ANSWER_LENGTH <= end
+        && regionMatches(text, index + 1, ANSWER_SUFFIX)
+        && isLetter(text.charAt(index + ANSWER_LENGTH - 1));
+  }
+
+  private static boolean isLineTerminator(char ch) {
+    return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+  }
+
+  /**
+   * Checks for an ascii letter, as matched by {@code [a-zA-Z]}.
+   *
+   * @param ch the character.
+   * @return true for an ascii letter.
+   */
+  static boolean isLetter(char ch) {
+    return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+  }
+
+  /**
+   * Checks for the character closing an option marker, as matched by {@code [.)]}.
+   *
+   * @param ch the character.
+   * @return true for a dot or closing brace.
+   */
+  static boolean isOptionMarker(char ch) {
+    return ch == '.' || ch == ')';
+  }
+
+  /**
+   * Checks if the token occurs in the text at the given index.
+   *
+   * @param text the {@link CharSequence}.
+   * @param index the index to compare from.
+   * @param token the token.
+   * @return true if the token matches.
+   */
+  static boolean regionMatches(CharSequence text, int index, String token) {
+    for (int offset = 0; offset < token.length(); offset++) {
+      if (text.charAt(index + offset) != token.charAt(offset)) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
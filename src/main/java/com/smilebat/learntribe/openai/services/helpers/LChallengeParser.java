@@ -3,6 +3,7 @@ package com.smilebat.learntribe.openai.services.helpers;
 import com.smilebat.learntribe.dataaccess.jpa.entity.Challenge;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Predicate;
 import org.springframework.stereotype.Component;
 
 /**
@@ -18,27 +19,31 @@ public class LChallengeParser {
   /**
    * Parses the text obtained from open ai text completion.
    *
-   * @param text the {@link String} text to be parsed
+   * <p>Lines are scanned in place, only the retained question, option and answer texts are copied.
+   *
+   * @param text the {@link CharSequence} text to be parsed
    * @return the list of {@link Challenge}.
    */
-  public Set<Challenge> parseText(String text) {
-    String[] arr = text.split("\n");
-    AbstractChallenge absractChallenge = new AbstractChallenge();
+  public Set<Challenge> parseText(CharSequence text) {
     Set<Challenge> challenges = new HashSet<>(3);
-    int index = 0;
-
-    while (index < arr.length) {
-      while (arr[index].isBlank()) {
-        index += 1;
-      }
-      String inputText = arr[index].trim();
-      absractChallenge.selectAbstraction(ChallengePattern.evaluate(inputText), inputText);
-      if (absractChallenge.isChallengeParsed()) {
-        challenges.add(absractChallenge.getChallenge());
-        absractChallenge = new AbstractChallenge();
-      }
-      index++;
-    }
+    ChallengeParserSession session =
+        newSession(
+            challenge -> {
+              challenges.add(challenge);
+              return true;
+            });
+    session.accept(text);
+    session.finish();
     return challenges;
   }
+
+  /**
+   * Starts an incremental parse for text arriving in chunks.
+   *
+   * @param sink receives every parsed {@link Challenge}, returns false to stop parsing.
+   * @return the {@link ChallengeParserSession}.
+   */
+  public ChallengeParserSession newSession(Predicate<Challenge> sink) {
+    return new ChallengeParserSession(sink);
+  }
 }
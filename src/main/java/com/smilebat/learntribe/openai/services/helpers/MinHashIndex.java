@@ -0,0 +1,193 @@
+package com.smilebat.learntribe.openai.services.helpers;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Near duplicate index of question texts based on MinHash signatures and LSH banding.
+ *
+ * <p>Texts are normalized and split into character shingles. Every text is reduced to a signature
+ * of {@link #HASHES} min hashes, whose share of equal positions estimates the Jaccard similarity
+ * of the shingle sets. Signatures are bucketed by bands of {@link #ROWS} hashes so that only texts
+ * sharing a band are compared. The index holds at most its capacity of texts, the oldest text is
+ * evicted to make room for a new one.
+ *
+ * <p>Not thread safe, callers synchronize on the index.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ */
+public class MinHashIndex {
+
+  static final int HASHES = 64;
+
+  static final int ROWS = 4;
+
+  private static final int BANDS = HASHES / ROWS;
+
+  private static final int SHINGLE = 5;
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private static final Pattern ENUMERATION =
+      Pattern.compile("^\\s*(q(uestion)?\\s*)?\\d+\\s*[.):-]\\s*");
+
+  private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{Alnum}]+");
+
+  private final double threshold;
+
+  private final int capacity;
+
+  private final List<Map<Integer, List<long[]>>> bands = new ArrayList<>(BANDS);
+
+  private final Deque<long[]> signatures = new ArrayDeque<>();
+
+  /**
+   * Creates an empty index.
+   *
+   * @param threshold the estimated Jaccard similarity from which texts are duplicates.
+   * @param capacity the maximum number of indexed texts.
+   */
+  public MinHashIndex(double threshold, int capacity) {
+    this.threshold = threshold;
+    this.capacity = capacity;
+    for (int i = 0; i < BANDS; i++) {
+      bands.add(new HashMap<>());
+    }
+  }
+
+  /**
+   * Adds the text unless a near duplicate is indexed already.
+   *
+   * @param text the text.
+   * @return true if the text was added, false if it is a near duplicate.
+   */
+  public boolean add(String text) {
+    return add(signature(text));
+  }
+
+  /**
+   * Removes the text, a near duplicate of it is accepted again afterwards.
+   *
+   * @param text the text.
+   * @return true if the text was indexed.
+   */
+  public boolean remove(String text) {
+    final long[] signature = signature(text);
+    for (Iterator<long[]> iterator = signatures.iterator(); iterator.hasNext(); ) {
+      final long[] indexed = iterator.next();
+      if (Arrays.equals(indexed, signature)) {
+        iterator.remove();
+        unband(indexed);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of indexed texts.
+   *
+   * @return the size.
+   */
+  public int size() {
+    return signatures.size();
+  }
+
+  boolean add(long[] signature) {
+    if (containsSimilar(signature)) {
+      return false;
+    }
+    if (signatures.size() >= capacity) {
+      unband(signatures.removeFirst());
+    }
+    for (int band = 0; band < BANDS; band++) {
+      bands
+          .get(band)
+          .computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>(1))
+          .add(signature);
+    }
+    signatures.addLast(signature);
+    return true;
+  }
+
+  private void unband(long[] signature) {
+    for (int band = 0; band < BANDS; band++) {
+      final Map<Integer, List<long[]>> buckets = bands.get(band);
+      final int key = bandKey(signature, band);
+      final List<long[]> bucket = buckets.get(key);
+      if (bucket != null) {
+        bucket.removeIf(indexed -> indexed == signature);
+        if (bucket.isEmpty()) {
+          buckets.remove(key);
+        }
+      }
+    }
+  }
+
+  private boolean containsSimilar(long[] signature) {
+    for (int band = 0; band < BANDS; band++) {
+      final List<long[]> candidates = bands.get(band).get(bandKey(signature, band));
+      if (candidates == null) {
+        continue;
+      }
+      for (long[] candidate : candidates) {
+        if (similarity(signature, candidate) >= threshold) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  static double similarity(long[] first, long[] second) {
+    int equal = 0;
+    for (int i = 0; i < HASHES; i++) {
+      if (first[i] == second[i]) {
+        equal++;
+      }
+    }
+    return (double) equal / HASHES;
+  }
+
+  static long[] signature(String text) {
+    final String normalized = normalize(text);
+    final long[] signature = new long[HASHES];
+    Arrays.fill(signature, Long.MAX_VALUE);
+    final int shingles = Math.max(1, normalized.length() - SHINGLE + 1);
+    for (int start = 0; start < shingles; start++) {
+      final String shingle =
+          normalized.substring(start, Math.min(normalized.length(), start + SHINGLE));
+      final ByteBuffer hash = ByteBuffer.wrap(HASH.hashUnencodedChars(shingle).asBytes());
+      final long first = hash.getLong();
+      final long second = hash.getLong();
+      for (int i = 0; i < HASHES; i++) {
+        signature[i] = Math.min(signature[i], first + i * second);
+      }
+    }
+    return signature;
+  }
+
+  static String normalize(String text) {
+    final String lower = text.toLowerCase(Locale.ROOT);
+    final String unnumbered = ENUMERATION.matcher(lower).replaceFirst("");
+    return NON_ALPHANUMERIC.matcher(unnumbered).replaceAll(" ").trim();
+  }
+
+  private static int bandKey(long[] signature, int band) {
+    final int from = band * ROWS;
+    return Arrays.hashCode(Arrays.copyOfRange(signature, from, from + ROWS));
+  }
+}
@@ -0,0 +1,66 @@
+package com.smilebat.learntribe.openai.services.helpers;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers when keys were last seen.
+ *
+ * <p>At most {@code maxSize} keys are kept, the key seen longest ago is dropped first.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ * @param <K> the key type.
+ */
+public class RecencyTracker<K> {
+
+  private final ConcurrentMap<K, Long> seen = new ConcurrentHashMap<>();
+
+  private final int maxSize;
+
+  /**
+   * Creates a tracker.
+   *
+   * @param maxSize the maximum number of keys kept.
+   */
+  public RecencyTracker(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Records that the key was seen now.
+   *
+   * @param key the key.
+   */
+  public void touch(K key) {
+    seen.put(key, System.currentTimeMillis());
+    if (seen.size() > maxSize) {
+      seen.entrySet().stream().min(Map.Entry.comparingByValue()).ifPresent(this::remove);
+    }
+  }
+
+  /**
+   * Returns the keys seen within the window, most recent first. Older keys are forgotten.
+   *
+   * @param windowMillis the window in milliseconds.
+   * @return the recent keys.
+   */
+  public List<K> getRecent(long windowMillis) {
+    final long cutoff = System.currentTimeMillis() - windowMillis;
+    seen.values().removeIf(time -> time < cutoff);
+    return seen.entrySet()
+        .stream()
+        .sorted(Map.Entry.<K, Long>comparingByValue(Comparator.reverseOrder()))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  private void remove(Map.Entry<K, Long> entry) {
+    seen.remove(entry.getKey(), entry.getValue());
+  }
+}
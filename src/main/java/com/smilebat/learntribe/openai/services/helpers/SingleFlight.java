@@ -0,0 +1,86 @@
+package com.smilebat.learntribe.openai.services.helpers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent executions for the same key into one.
+ *
+ * <p>The first caller for a key runs the task. With {@link #tryExecute(Object, Runnable)} callers
+ * arriving while it runs skip it, with {@link #executeAsync(Object, Supplier)} the task is started
+ * elsewhere and callers share the future of the execution, including its failure. The key is
+ * released once the task completes.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Pai,Sai Nandan
+ * @param <K> the key type.
+ */
+public class SingleFlight<K> {
+
+  private final ConcurrentMap<K, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Runs the task for the key unless an execution for it is already in flight.
+   *
+   * @param key the key.
+   * @param task the task.
+   * @return true if this caller ran the task, false if another execution was in flight.
+   */
+  public boolean tryExecute(K key, Runnable task) {
+    final CompletableFuture<Void> flight = new CompletableFuture<>();
+    if (inFlight.putIfAbsent(key, flight) != null) {
+      return false;
+    }
+    run(key, flight, task);
+    return true;
+  }
+
+  /**
+   * Starts the task for the key, or joins the execution already in flight for it, without
+   * blocking.
+   *
+   * @param key the key.
+   * @param start starts the task, returning its future.
+   * @return the {@link CompletableFuture} of the execution.
+   */
+  public CompletableFuture<Void> executeAsync(K key, Supplier<CompletableFuture<Void>> start) {
+    final CompletableFuture<Void> flight = new CompletableFuture<>();
+    final CompletableFuture<Void> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      return existing;
+    }
+    final CompletableFuture<Void> started;
+    try {
+      started = start.get();
+    } catch (RuntimeException | Error ex) {
+      inFlight.remove(key, flight);
+      flight.completeExceptionally(ex);
+      throw ex;
+    }
+    started.whenComplete(
+        (result, ex) -> {
+          inFlight.remove(key, flight);
+          if (ex != null) {
+            flight.completeExceptionally(ex);
+          } else {
+            flight.complete(null);
+          }
+        });
+    return flight;
+  }
+
+  private void run(K key, CompletableFuture<Void> flight, Runnable task) {
+    try {
+      task.run();
+      flight.complete(null);
+    } catch (RuntimeException | Error ex) {
+      flight.completeExceptionally(ex);
+      throw ex;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.smilebat.learntribe.openai.services.helpers;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.springframework.stereotype.Component;
+
+/**
+ * Parser to parse open AI text and convert to profile summaries.
+ *
+ * <p>Copyright &copy; 2023 Smile .Bat
+ *
+ * @author Likith
+ * @author Pai,Sai Nandan
+ */
+@Component
+public class SummaryParser {
+
+  /**
+   * Parses the text completion for query extractions.
+   *
+   * @param str the completed open ai text.
+   * @return Set of String.
+   */
+  public Set<String> parseText(String str) {
+    String[] arr = str.split("\n");
+    Set<String> summaries = new HashSet<>(3);
+    int index = 1;
+    int arrLen = arr.length;
+    while (index < arrLen) {
+      while (arr[index].isBlank()) {
+        index += 1;
+      }
+      String inputText = arr[index].trim();
+      inputText = inputText.replaceAll("[0-9]. ", "");
+      summaries.add(inputText);
+      index++;
+    }
+    return summaries;
+  }
+}
@@ -0,0 +1,123 @@
+package com.smilebat.learntribe.openai.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.smilebat.learntribe.assessment.AssessmentRequest;
+import com.smilebat.learntribe.kafka.KafkaSkillsRequest;
+import com.smilebat.learntribe.openai.kafka.KafkaProducer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChallengeStoreTest {
+
+  private static final String SKILL = "Java";
+
+  @Mock private ChallengeSkillProcessor skillProcessor;
+
+  @Mock private KafkaProducer producer;
+
+  @Mock private SkillInventory inventory;
+
+  @Mock private PriorityScheduler scheduler;
+
+  @Mock private SkillReadiness readiness;
+
+  @Mock private SkillProgressTracker progressTracker;
+
+  @Mock private KafkaSkillsRequest request;
+
+  @Mock private AssessmentRequest assessmentRequest;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+  private ChallengeStore store;
+
+  @Before
+  public void setUp() {
+    store =
+        new ChallengeStore(
+            skillProcessor,
+            producer,
+            inventory,
+            scheduler,
+            readiness,
+            progressTracker,
+            new SimpleMeterRegistry(),
+            executor);
+    ReflectionTestUtils.setField(store, "openAiFeature", true);
+    when(request.getSkills()).thenReturn(Set.of(SKILL));
+    when(request.getAssessmentRequest()).thenReturn(assessmentRequest);
+    when(assessmentRequest.getAssigneeEmails()).thenReturn(List.of("assignee@smilebat.com"));
+    when(scheduler.execute(eq(WorkClass.ASSESSMENT), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    when(readiness.whenReady(eq(SKILL), any())).thenReturn(ready);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testParkedRequestForwardedOnceReleased() throws Exception {
+    final AtomicReference<Thread> sender = new AtomicReference<>();
+    when(producer.sendAsync(assessmentRequest))
+        .thenAnswer(
+            invocation -> {
+              sender.set(Thread.currentThread());
+              return CompletableFuture.completedFuture(null);
+            });
+
+    final CompletableFuture<Void> consumed =
+        CompletableFuture.runAsync(() -> store.createAssessments(request, null));
+    Assert.assertThrows(TimeoutException.class, () -> consumed.get(200, TimeUnit.MILLISECONDS));
+    verify(producer, never()).sendAsync(assessmentRequest);
+
+    ready.complete(null);
+    consumed.get(10, TimeUnit.SECONDS);
+
+    verify(producer).sendAsync(assessmentRequest);
+    /* the thread releasing the request, the write behind flush in production, does not send */
+    Assert.assertNotEquals(Thread.currentThread(), sender.get());
+  }
+
+  @Test
+  public void testFailedForwardFailsRequest() {
+    when(producer.sendAsync(assessmentRequest))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+    ready.complete(null);
+
+    Assert.assertThrows(CompletionException.class, () -> store.createAssessments(request, null));
+  }
+
+  @Test
+  public void testFailedReadinessNotForwarded() {
+    ready.completeExceptionally(new IllegalStateException("batch dropped"));
+
+    Assert.assertThrows(CompletionException.class, () -> store.createAssessments(request, null));
+    verify(producer, never()).sendAsync(assessmentRequest);
+  }
+}
@@ -0,0 +1,103 @@
+package com.smilebat.learntribe.openai.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import com.smilebat.learntribe.learntribeclients.openai.OpenAiService;
+import com.smilebat.learntribe.openai.configuration.GenerationConfig;
+import com.smilebat.learntribe.openai.response.Choice;
+import com.smilebat.learntribe.openai.response.OpenAiResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FeignCompletionClientTest {
+
+  /* generation.parallelism times skills.parallelism, twice over */
+  private static final int CALLS = 32;
+
+  @Mock private OpenAiService openAiService;
+
+  @Mock private OpenAiResponse response;
+
+  @Mock private Choice choice;
+
+  private ExecutorService generationExecutor;
+
+  private ExecutorService openAiExecutor;
+
+  private CompletionGovernor governor;
+
+  private FeignCompletionClient client;
+
+  @Before
+  public void setUp() {
+    final GenerationConfig config = new GenerationConfig();
+    ReflectionTestUtils.setField(config, "workers", 8);
+    ReflectionTestUtils.setField(config, "openAiThreads", 32);
+    generationExecutor = config.generationExecutor();
+    openAiExecutor = config.openAiExecutor();
+
+    governor = new CompletionGovernor(new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(governor, "rate", 1000d);
+    ReflectionTestUtils.setField(governor, "burst", 10d);
+    ReflectionTestUtils.setField(governor, "initialLimit", 4d);
+    ReflectionTestUtils.setField(governor, "minLimit", 1d);
+    ReflectionTestUtils.setField(governor, "maxLimit", 32d);
+    ReflectionTestUtils.setField(governor, "backoff", 0.5);
+    ReflectionTestUtils.setField(governor, "latencyThreshold", 20000L);
+    governor.init();
+
+    client = new FeignCompletionClient(openAiService, openAiExecutor);
+    when(choice.getText()).thenReturn("completion");
+    when(response.getChoices()).thenReturn(List.of(choice));
+  }
+
+  @After
+  public void tearDown() {
+    generationExecutor.shutdownNow();
+    openAiExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testSaturatedGenerationWorkersProgress() throws Exception {
+    when(openAiService.getCompletions(any()))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(20);
+              return response;
+            });
+
+    /* submitted the way the challenge factory does, every worker ends up waiting for a slot */
+    final List<CompletableFuture<List<String>>> calls =
+        IntStream.range(0, CALLS)
+            .mapToObj(
+                i ->
+                    CompletableFuture.supplyAsync(
+                            () ->
+                                governor.executeAsync(
+                                    () -> client.completeAsync(MultiChoiceRequest.of("q" + i, 1))),
+                            generationExecutor)
+                        .thenCompose(Function.identity()))
+            .collect(Collectors.toList());
+
+    CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+    for (CompletableFuture<List<String>> call : calls) {
+      Assert.assertEquals(List.of("completion"), call.join());
+    }
+  }
+}
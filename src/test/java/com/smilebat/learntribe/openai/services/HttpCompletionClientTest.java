@@ -0,0 +1,128 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HttpCompletionClientTest {
+
+  private static final String COMPLETION =
+      "{\"choices\":[{\"text\":\"first\",\"index\":0},{\"text\":\"second\",\"index\":1}]}";
+
+  @Spy private ObjectMapper mapper = new ObjectMapper();
+
+  @Spy private OpenAiEndpoint endpoint = new OpenAiEndpoint();
+
+  @InjectMocks private HttpCompletionClient client;
+
+  private final AtomicReference<String> requestBody = new AtomicReference<>();
+
+  private HttpServer server;
+
+  private int status;
+
+  private String response;
+
+  @Before
+  public void setUp() throws IOException {
+    status = 200;
+    response = COMPLETION;
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/v1/completions", this::handle);
+    server.start();
+    ReflectionTestUtils.setField(
+        endpoint, "url", "http://localhost:" + server.getAddress().getPort() + "/v1/completions");
+    ReflectionTestUtils.setField(endpoint, "apiKey", "test");
+    ReflectionTestUtils.setField(endpoint, "model", "test-model");
+    ReflectionTestUtils.setField(endpoint, "maxTokens", 256);
+    ReflectionTestUtils.setField(endpoint, "connectTimeout", 1000L);
+    ReflectionTestUtils.setField(endpoint, "readTimeout", 5000L);
+    endpoint.init();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testCompletionTexts() throws Exception {
+    final List<String> texts =
+        client.completeAsync(MultiChoiceRequest.of("prompt", 2)).get(5, TimeUnit.SECONDS);
+
+    Assert.assertEquals(List.of("first", "second"), texts);
+  }
+
+  @Test
+  public void testBodyDefaults() throws Exception {
+    client.completeAsync(MultiChoiceRequest.of("prompt", 2)).get(5, TimeUnit.SECONDS);
+
+    final JsonNode body = mapper.readTree(requestBody.get());
+    Assert.assertEquals("test-model", body.path("model").asText());
+    Assert.assertEquals(256, body.path("max_tokens").asInt());
+    Assert.assertEquals("prompt", body.path("prompt").asText());
+    Assert.assertEquals(2, body.path("n").asInt());
+  }
+
+  @Test
+  public void testServerError() {
+    status = 500;
+
+    Assert.assertEquals(500, getFailure(OpenAiHttpException.class).getStatus());
+  }
+
+  @Test
+  public void testThrottled() {
+    status = 429;
+
+    Assert.assertEquals(429, getFailure(OpenAiHttpException.class).getStatus());
+  }
+
+  @Test
+  public void testEmptyChoices() {
+    response = "{\"choices\":[]}";
+
+    getFailure(IllegalArgumentException.class);
+  }
+
+  private <T extends Throwable> T getFailure(Class<T> type) {
+    final ExecutionException ex =
+        Assert.assertThrows(
+            ExecutionException.class,
+            () ->
+                client.completeAsync(MultiChoiceRequest.of("prompt", 1)).get(5, TimeUnit.SECONDS));
+    Assert.assertTrue(type.isInstance(ex.getCause()));
+    return type.cast(ex.getCause());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    final byte[] body =
+        (status == 200 ? response : "{\"error\":\"rate limited\"}")
+            .getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
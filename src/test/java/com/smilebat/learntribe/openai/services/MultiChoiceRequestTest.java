@@ -0,0 +1,46 @@
+package com.smilebat.learntribe.openai.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smilebat.learntribe.openai.OpenAiRequest;
+import com.smilebat.learntribe.openai.configuration.FormSupportConfig;
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+public class MultiChoiceRequestTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  /* the encoder the feign clients use, given the body as the declared OpenAiRequest */
+  private final Encoder encoder =
+      new FormSupportConfig()
+          .feignFormEncoder(
+              () ->
+                  new HttpMessageConverters(
+                      false, List.of(new MappingJackson2HttpMessageConverter(mapper))));
+
+  @Test
+  public void testChoicesEncoded() throws Exception {
+    final MultiChoiceRequest request = MultiChoiceRequest.of("prompt", 3);
+    request.setMaxTokens(256);
+
+    final JsonNode body = encode(request);
+
+    Assert.assertEquals("prompt", body.path("prompt").asText());
+    Assert.assertEquals(3, body.path("n").asInt());
+    Assert.assertEquals(256, body.path("max_tokens").asInt());
+  }
+
+  private JsonNode encode(OpenAiRequest request) throws Exception {
+    final RequestTemplate template = new RequestTemplate();
+    template.header("Content-Type", "application/json");
+    encoder.encode(request, OpenAiRequest.class, template);
+    return mapper.readTree(new String(template.body(), StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,160 @@
+package com.smilebat.learntribe.openai.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrioritySchedulerTest {
+
+  private static final long TIMEOUT = 10;
+
+  private PriorityScheduler scheduler;
+
+  private final List<WorkClass> started = Collections.synchronizedList(new ArrayList<>());
+
+  @Before
+  public void setUp() {
+    final Map<WorkClass, Integer> weights = new EnumMap<>(WorkClass.class);
+    weights.put(WorkClass.ASSESSMENT, 6);
+    weights.put(WorkClass.SUMMARY, 3);
+    weights.put(WorkClass.REFILL, 1);
+    /* a single worker starts the queued tasks one after the other */
+    scheduler =
+        new PriorityScheduler(
+            1,
+            weights,
+            new SimpleMeterRegistry(),
+            runnable -> {
+              final Thread thread = new Thread(runnable);
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testTasksStartedByWeight() throws Exception {
+    final CountDownLatch gate = block();
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(submit(WorkClass.REFILL));
+      futures.add(submit(WorkClass.SUMMARY));
+      futures.add(submit(WorkClass.ASSESSMENT));
+    }
+    gate.countDown();
+    await(futures);
+
+    final List<WorkClass> first = started.subList(0, 20);
+    Assert.assertEquals(12, Collections.frequency(first, WorkClass.ASSESSMENT), 1);
+    Assert.assertEquals(6, Collections.frequency(first, WorkClass.SUMMARY), 1);
+    Assert.assertEquals(2, Collections.frequency(first, WorkClass.REFILL), 1);
+  }
+
+  @Test
+  public void testIdleClassRejoinsAtCurrentPass() throws Exception {
+    final CountDownLatch busy = block();
+    final List<CompletableFuture<Void>> assessments = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      assessments.add(submit(WorkClass.ASSESSMENT));
+    }
+    busy.countDown();
+    await(assessments);
+    started.clear();
+
+    final CountDownLatch gate = block();
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(submit(WorkClass.REFILL));
+      futures.add(submit(WorkClass.ASSESSMENT));
+    }
+    gate.countDown();
+    await(futures);
+
+    /* refills idle while assessments ran do not get to run back to back now */
+    final List<WorkClass> first = started.subList(0, 7);
+    Assert.assertTrue(Collections.frequency(first, WorkClass.REFILL) <= 2);
+  }
+
+  @Test
+  public void testPromotedTaskRunsAhead() throws Exception {
+    final CountDownLatch gate = block();
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(submit(WorkClass.REFILL));
+    }
+    /* recorded as an assessment once it runs */
+    final CompletableFuture<Void> promoted =
+        scheduler.execute(WorkClass.REFILL, () -> started.add(WorkClass.ASSESSMENT));
+    futures.add(promoted);
+
+    Assert.assertTrue(scheduler.promote(promoted, WorkClass.ASSESSMENT));
+    Assert.assertFalse(scheduler.promote(promoted, WorkClass.SUMMARY));
+    gate.countDown();
+    await(futures);
+
+    Assert.assertTrue(started.indexOf(WorkClass.ASSESSMENT) <= 1);
+    Assert.assertFalse(scheduler.promote(promoted, WorkClass.ASSESSMENT));
+  }
+
+  @Test
+  public void testShutdownDrainsQueuedTasks() throws Exception {
+    final CountDownLatch gate = block();
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(submit(WorkClass.REFILL));
+    }
+    scheduler.shutdown();
+    gate.countDown();
+    await(futures);
+
+    Assert.assertEquals(5, started.size());
+    Assert.assertThrows(
+        RejectedExecutionException.class, () -> scheduler.execute(WorkClass.ASSESSMENT, () -> {}));
+  }
+
+  /**
+   * Holds the worker until the returned latch is released.
+   *
+   * @return the latch releasing the worker.
+   */
+  private CountDownLatch block() throws InterruptedException {
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch gate = new CountDownLatch(1);
+    scheduler.execute(
+        WorkClass.ASSESSMENT,
+        () -> {
+          running.countDown();
+          try {
+            gate.await();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    Assert.assertTrue(running.await(TIMEOUT, TimeUnit.SECONDS));
+    return gate;
+  }
+
+  private CompletableFuture<Void> submit(WorkClass workClass) {
+    return scheduler.execute(workClass, () -> started.add(workClass));
+  }
+
+  private static void await(List<CompletableFuture<Void>> futures) throws Exception {
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .get(TIMEOUT, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,80 @@
+package com.smilebat.learntribe.openai.services;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.smilebat.learntribe.kafka.KafkaSkillsRequest;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SkillProgressTrackerTest {
+
+  @Mock private SkillInventory inventory;
+
+  @InjectMocks private SkillProgressTracker tracker;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(tracker, "ttl", 60L);
+    ReflectionTestUtils.setField(tracker, "maxJobs", 10L);
+    tracker.init();
+  }
+
+  @Test
+  public void testProgressTrackedPerJob() {
+    when(inventory.getChallengeCount(anyString())).thenReturn(0);
+    final String first = tracker.createJob(List.of(request("Java", "Kotlin")));
+    final String second = tracker.createJob(List.of(request("Java")));
+
+    tracker.started(first, "Java");
+    tracker.done(first, "Kotlin");
+    tracker.done(null, "Java");
+
+    Assert.assertEquals(SkillState.GENERATING, getState(first, "Java"));
+    Assert.assertEquals(SkillState.DONE, getState(first, "Kotlin"));
+    Assert.assertEquals(SkillState.QUEUED, getState(second, "Java"));
+    Assert.assertFalse(tracker.getStatus(first).orElseThrow().isCompleted());
+
+    tracker.failed(first, "Java");
+    tracker.done(second, "java ");
+
+    Assert.assertEquals(SkillState.FAILED, getState(first, "Java"));
+    Assert.assertEquals(SkillState.DONE, getState(second, "Java"));
+    Assert.assertTrue(tracker.getStatus(first).orElseThrow().isCompleted());
+  }
+
+  @Test
+  public void testUnknownJobIgnored() {
+    tracker.done("unknown", "Java");
+
+    Assert.assertFalse(tracker.getStatus("unknown").isPresent());
+  }
+
+  private SkillState getState(String jobId, String skill) {
+    return tracker
+        .getStatus(jobId)
+        .orElseThrow()
+        .getSkills()
+        .stream()
+        .filter(status -> status.getSkill().equals(skill))
+        .findFirst()
+        .orElseThrow()
+        .getStatus();
+  }
+
+  private static KafkaSkillsRequest request(String... skills) {
+    final KafkaSkillsRequest request = mock(KafkaSkillsRequest.class);
+    when(request.getSkills()).thenReturn(Set.of(skills));
+    return request;
+  }
+}
@@ -0,0 +1,117 @@
+package com.smilebat.learntribe.openai.services;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SkillReadinessTest {
+
+  private static final String SKILL = "Java";
+
+  private static final Set<String> FLUSHED = Set.of(SkillInventory.normalize(SKILL));
+
+  @Mock private SkillInventory inventory;
+
+  @Mock private WriteBehindStore writeBehindStore;
+
+  @Mock private ChallengeSkillProcessor skillProcessor;
+
+  @InjectMocks private SkillReadiness readiness;
+
+  @Captor private ArgumentCaptor<BiConsumer<Set<String>, Boolean>> listener;
+
+  private final AtomicInteger count = new AtomicInteger();
+
+  private final AtomicInteger pending = new AtomicInteger();
+
+  @Before
+  public void setUp() {
+    when(skillProcessor.getWarmThreshold()).thenReturn(10);
+    when(inventory.getChallengeCount(anyString())).thenAnswer(invocation -> count.get());
+    when(writeBehindStore.getPendingChallenges(anyString()))
+        .thenAnswer(invocation -> pending.get());
+    readiness.init();
+    verify(writeBehindStore).addChallengeListener(listener.capture());
+  }
+
+  @Test
+  public void testWarmSkillReady() {
+    count.set(10);
+
+    final CompletableFuture<Void> ready = readiness.whenReady(SKILL, new CompletableFuture<>());
+
+    Assert.assertTrue(ready.isDone());
+    Assert.assertFalse(ready.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testParkedUntilThresholdStored() {
+    final CompletableFuture<Void> ready = readiness.whenReady(SKILL, new CompletableFuture<>());
+    Assert.assertFalse(ready.isDone());
+
+    /* challenges handed over are counted but not yet stored */
+    count.set(10);
+    pending.set(10);
+    listener.getValue().accept(FLUSHED, true);
+    Assert.assertFalse(ready.isDone());
+
+    pending.set(0);
+    listener.getValue().accept(FLUSHED, true);
+    Assert.assertTrue(ready.isDone());
+    Assert.assertFalse(ready.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testReleasedOnceGeneratedChallengesStored() {
+    final CompletableFuture<Void> generation = new CompletableFuture<>();
+    count.set(4);
+    pending.set(4);
+    final CompletableFuture<Void> ready = readiness.whenReady(SKILL, generation);
+
+    generation.complete(null);
+    Assert.assertFalse(ready.isDone());
+
+    pending.set(0);
+    listener.getValue().accept(FLUSHED, true);
+    Assert.assertTrue(ready.isDone());
+    Assert.assertFalse(ready.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testDroppedBatchFails() {
+    count.set(4);
+    pending.set(4);
+    final CompletableFuture<Void> ready = readiness.whenReady(SKILL, new CompletableFuture<>());
+
+    count.set(0);
+    pending.set(0);
+    listener.getValue().accept(FLUSHED, false);
+
+    Assert.assertTrue(ready.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testFailedGenerationFails() {
+    final CompletableFuture<Void> generation = new CompletableFuture<>();
+    final CompletableFuture<Void> ready = readiness.whenReady(SKILL, generation);
+
+    generation.completeExceptionally(new IllegalStateException("generation failed"));
+
+    Assert.assertTrue(ready.isCompletedExceptionally());
+  }
+}
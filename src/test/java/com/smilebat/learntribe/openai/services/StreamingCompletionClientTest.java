@@ -0,0 +1,144 @@
+package com.smilebat.learntribe.openai.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smilebat.learntribe.dataaccess.jpa.entity.Challenge;
+import com.smilebat.learntribe.openai.services.helpers.ChallengeParserSession;
+import com.smilebat.learntribe.openai.services.helpers.LChallengeParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamingCompletionClientTest {
+
+  private static final String COMPLETION =
+      "\n\n1. What is the default value of a boolean field in Java?\na. true\nb. false\nc. null\n"
+          + "d. 0\nAnswer: b. false\n\n2. Which keyword prevents a method from being overridden?\n"
+          + "a. static\nb. final\nc. private\nd. const\nAnswer: b. final";
+
+  @Spy private ObjectMapper mapper = new ObjectMapper();
+
+  @Mock private CompletionGovernor governor;
+
+  @Spy private MeterRegistry registry = new SimpleMeterRegistry();
+
+  @Spy private OpenAiEndpoint endpoint = new OpenAiEndpoint();
+
+  @InjectMocks private StreamingCompletionClient client;
+
+  private final LChallengeParser parser = new LChallengeParser();
+
+  private final AtomicReference<String> requestBody = new AtomicReference<>();
+
+  private HttpServer server;
+
+  private int status;
+
+  @Before
+  public void setUp() throws IOException {
+    status = 200;
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/v1/completions", this::handle);
+    server.start();
+    ReflectionTestUtils.setField(
+        endpoint, "url", "http://localhost:" + server.getAddress().getPort() + "/v1/completions");
+    ReflectionTestUtils.setField(endpoint, "apiKey", "test");
+    ReflectionTestUtils.setField(endpoint, "model", "test-model");
+    ReflectionTestUtils.setField(endpoint, "maxTokens", 256);
+    ReflectionTestUtils.setField(endpoint, "connectTimeout", 1000L);
+    ReflectionTestUtils.setField(endpoint, "readTimeout", 5000L);
+    endpoint.init();
+    when(governor.execute(any()))
+        .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testStreamedChallenges() {
+    final List<Challenge> challenges = new ArrayList<>();
+    final ChallengeParserSession session = parser.newSession(challenges::add);
+
+    final boolean finished = client.stream("prompt", 1, (index, text) -> session.accept(text));
+    session.finish();
+
+    Assert.assertTrue(finished);
+    Assert.assertEquals(2, challenges.size());
+    Assert.assertTrue(requestBody.get().contains("\"stream\":true"));
+  }
+
+  @Test
+  public void testCancelAfterFirstChallenge() {
+    final List<Challenge> challenges = new ArrayList<>();
+    final ChallengeParserSession session =
+        parser.newSession(
+            challenge -> {
+              challenges.add(challenge);
+              return false;
+            });
+
+    final boolean finished = client.stream("prompt", 1, (index, text) -> session.accept(text));
+
+    Assert.assertFalse(finished);
+    Assert.assertTrue(session.isCancelled());
+    Assert.assertEquals(1, challenges.size());
+  }
+
+  @Test
+  public void testThrottled() {
+    status = 429;
+    final OpenAiHttpException ex =
+        Assert.assertThrows(
+            OpenAiHttpException.class, () -> client.stream("prompt", 1, (index, text) -> true));
+    Assert.assertEquals(429, ex.getStatus());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+    exchange.sendResponseHeaders(status, 0);
+    try (OutputStream out = exchange.getResponseBody()) {
+      if (status != 200) {
+        out.write("{\"error\":\"rate limited\"}".getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+      for (int i = 0; i < COMPLETION.length(); i += 7) {
+        final String token = COMPLETION.substring(i, Math.min(COMPLETION.length(), i + 7));
+        final Map<String, Object> choice = Map.of("text", token, "index", 0);
+        write(out, mapper.writeValueAsString(Map.of("choices", List.of(choice))));
+      }
+      write(out, "[DONE]");
+    }
+  }
+
+  private static void write(OutputStream out, String data) throws IOException {
+    out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+}
@@ -0,0 +1,97 @@
+package com.smilebat.learntribe.openai.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import com.smilebat.learntribe.dataaccess.jpa.entity.ProfileSummary;
+import com.smilebat.learntribe.openai.services.helpers.SummaryParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SummaryFactoryTest {
+
+  private static final int CHOICES = 3;
+
+  @Mock private CompletionService completionService;
+
+  @Mock private WriteBehindStore writeBehindStore;
+
+  @Mock private SkillInventory inventory;
+
+  @Spy private SummaryParser summaryParser = new SummaryParser();
+
+  @Mock private GenerationBudgetPolicy budgetPolicy;
+
+  @Spy private MeterRegistry registry = new SimpleMeterRegistry();
+
+  @Mock private PriorityScheduler scheduler;
+
+  @InjectMocks private SummaryFactory factory;
+
+  private final List<String> cached = completion(0);
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private final List<ProfileSummary> saved = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(factory, "maxSummaryCap", 10);
+    ReflectionTestUtils.setField(factory, "choices", CHOICES);
+    when(budgetPolicy.newBudget(PromptType.SUMMARY))
+        .thenAnswer(
+            invocation ->
+                new GenerationBudget(PromptType.SUMMARY, registry, 20, 40000, 5, 0.5, 3, 120000));
+    when(inventory.getSummaryCount(anyString(), anyString())).thenAnswer(i -> saved.size());
+    /* a cache lookup always answers the same completion, a bypass answers new summaries */
+    when(completionService.complete(eq(PromptType.SUMMARY), any(), anyBoolean()))
+        .thenAnswer(
+            invocation ->
+                invocation.<Boolean>getArgument(2)
+                    ? cached
+                    : completion(calls.incrementAndGet()));
+    doAnswer(
+            invocation -> {
+              saved.addAll(invocation.<Set<ProfileSummary>>getArgument(2));
+              return null;
+            })
+        .when(writeBehindStore)
+        .addSummaries(anyString(), anyString(), any());
+  }
+
+  @Test
+  public void testFillsSummaryDeficit() {
+    Assert.assertTrue(factory.replenish("Developer", "Java"));
+
+    Assert.assertTrue(saved.size() >= 10);
+    Assert.assertEquals(1, calls.get());
+    Assert.assertTrue(factory.isAtCap("Developer", "Java"));
+  }
+
+  private static List<String> completion(int call) {
+    final List<String> texts = new ArrayList<>();
+    for (int choice = 0; choice < CHOICES; choice++) {
+      final String prefix = "Summary " + call + "-" + choice;
+      texts.add("\n1. " + prefix + " first\n2. " + prefix + " second");
+    }
+    return texts;
+  }
+}
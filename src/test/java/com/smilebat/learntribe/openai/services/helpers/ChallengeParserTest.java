@@ -69,4 +69,13 @@ public class ChallengeParserTest {
     final Set<Challenge> challenges = parser.parseText(completedText);
     Assert.assertEquals(3, challenges.size());
   }
+
+  @Test
+  public void testTrailingBlankLines() {
+    String completedText =
+        "\n\n1. What is the default value of a boolean field in Java?\na. true\nb. false\nc. null\n"
+            + "d. 0\n\nAnswer: b. false\n  \n\t\n";
+    final Set<Challenge> challenges = parser.parseText(completedText);
+    Assert.assertEquals(1, challenges.size());
+  }
 }
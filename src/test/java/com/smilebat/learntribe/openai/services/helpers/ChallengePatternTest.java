@@ -0,0 +1,75 @@
+package com.smilebat.learntribe.openai.services.helpers;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChallengePatternTest {
+
+  private static final String CORPUS =
+      "\n\n1. What is the most important feature of Java?\n\na. Platform independent\nb. "
+          + "Object oriented\nc. Simple\nd. Secure\n\nAnswer: a. Platform independent\n\n"
+          + "2. What is the purpose of ReactJs? \nZ) To create interactive user interfaces\n"
+          + "B. To create dynamic webpages\n  Answer: C. To fetch data from an API\n"
+          + "Correct Answer: A. Using ES6 classes\nA. const myComponent = () => {} \t\t"
+          + "B. class MyComponent extends Component {}\n5. What is the range of a char in java?"
+          + "\n-128 to 127\n*end*\nanswer: b\nANSWER: b\n3) Which one?\nWhich one is 3?\n"
+          + "Why?\n42\n\n  \t\nThe end *end* of it\nanswer:b\nAnswer:  c\ne.g. something";
+
+  private static final String ALPHABET = "0123456789?aAnswerNSWER: .)*endbBzZ\n\r\u2028 \t-";
+
+  @Test
+  public void testCorpusMatchesPatterns() {
+    for (String line : CORPUS.split("\n")) {
+      Assert.assertEquals(line, evaluateWithPatterns(line, 0, line.length()), evaluate(line));
+    }
+  }
+
+  @Test
+  public void testRandomLinesMatchPatterns() {
+    final Random random = new Random(42);
+    for (int i = 0; i < 200_000; i++) {
+      final StringBuilder line = new StringBuilder();
+      final int length = random.nextInt(24);
+      for (int j = 0; j < length; j++) {
+        line.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+      }
+      final int start = random.nextInt(length + 1);
+      final int end = start + random.nextInt(length - start + 1);
+      Assert.assertEquals(
+          line + " [" + start + ", " + end + ")",
+          evaluateWithPatterns(line, start, end),
+          ChallengePattern.evaluate(line, start, end));
+    }
+  }
+
+  @Test
+  public void testLineTypes() {
+    Assert.assertEquals(ChallengePattern.QUESTION, evaluate("1. What is Java?"));
+    Assert.assertEquals(ChallengePattern.ANSWER, evaluate("Answer: b. false"));
+    Assert.assertEquals(ChallengePattern.OPTIONS, evaluate("a) true"));
+    Assert.assertEquals(ChallengePattern.RAW, evaluate("*end*"));
+    Assert.assertEquals(ChallengePattern.TEXT, evaluate("42"));
+  }
+
+  private static ChallengePattern evaluate(String line) {
+    return ChallengePattern.evaluate(line);
+  }
+
+  /* The classification before the single pass, kept as the reference. */
+  private static ChallengePattern evaluateWithPatterns(CharSequence text, int start, int end) {
+    if (ChallengePattern.questionPattern.matcher(text).region(start, end).find()) {
+      return ChallengePattern.QUESTION;
+    }
+    if (ChallengePattern.answerPattern.matcher(text).region(start, end).find()) {
+      return ChallengePattern.ANSWER;
+    }
+    if (ChallengePattern.optionsPattern.matcher(text).region(start, end).find()) {
+      return ChallengePattern.OPTIONS;
+    }
+    if (text.subSequence(start, end).toString().contains("*end*")) {
+      return ChallengePattern.RAW;
+    }
+    return ChallengePattern.TEXT;
+  }
+}
@@ -0,0 +1,83 @@
+package com.smilebat.learntribe.openai.services.helpers;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MinHashIndexTest {
+
+  private static final double THRESHOLD = 0.8;
+
+  private static final String QUESTION = "1. What is the default value of a boolean field in Java?";
+
+  @Test
+  public void testNearDuplicateRejected() {
+    final MinHashIndex index = new MinHashIndex(THRESHOLD, 100);
+
+    Assert.assertTrue(index.add(QUESTION));
+    Assert.assertFalse(index.add("3) what is the default value of a boolean field in Java ?"));
+    Assert.assertFalse(index.add("Q4: What is the default value of a boolean field in Java"));
+    Assert.assertEquals(1, index.size());
+  }
+
+  @Test
+  public void testDistinctQuestionsRetained() {
+    final MinHashIndex index = new MinHashIndex(THRESHOLD, 100);
+
+    Assert.assertTrue(index.add(QUESTION));
+    Assert.assertTrue(index.add("2. Which keyword prevents a method from being overridden?"));
+    Assert.assertTrue(index.add("3. What is the default value of an int field in Kotlin?"));
+    Assert.assertEquals(3, index.size());
+  }
+
+  @Test
+  public void testBandCollisionBelowThreshold() {
+    final MinHashIndex index = new MinHashIndex(THRESHOLD, 100);
+    final long[] first = new long[MinHashIndex.HASHES];
+    final long[] second = new long[MinHashIndex.HASHES];
+    Arrays.fill(first, 1L);
+    Arrays.fill(second, 2L);
+    /* same first band, every other position differs */
+    Arrays.fill(second, 0, MinHashIndex.ROWS, 1L);
+
+    Assert.assertTrue(index.add(first));
+    Assert.assertTrue(index.add(second));
+    Assert.assertEquals(2, index.size());
+  }
+
+  @Test
+  public void testBandCollisionAboveThreshold() {
+    final MinHashIndex index = new MinHashIndex(THRESHOLD, 100);
+    final long[] first = new long[MinHashIndex.HASHES];
+    Arrays.fill(first, 1L);
+    final long[] second = first.clone();
+    /* the last band differs, the others collide */
+    Arrays.fill(second, MinHashIndex.HASHES - MinHashIndex.ROWS, MinHashIndex.HASHES, 2L);
+
+    Assert.assertTrue(MinHashIndex.similarity(first, second) >= THRESHOLD);
+    Assert.assertTrue(index.add(first));
+    Assert.assertFalse(index.add(second));
+  }
+
+  @Test
+  public void testRemoveAcceptsQuestionAgain() {
+    final MinHashIndex index = new MinHashIndex(THRESHOLD, 100);
+    index.add(QUESTION);
+
+    Assert.assertTrue(index.remove(QUESTION));
+    Assert.assertFalse(index.remove(QUESTION));
+    Assert.assertEquals(0, index.size());
+    Assert.assertTrue(index.add(QUESTION));
+  }
+
+  @Test
+  public void testOldestEvictedAtCapacity() {
+    final MinHashIndex index = new MinHashIndex(THRESHOLD, 2);
+    index.add(QUESTION);
+    index.add("2. Which keyword prevents a method from being overridden?");
+    index.add("3. Which collection keeps its elements sorted?");
+
+    Assert.assertEquals(2, index.size());
+    Assert.assertTrue(index.add(QUESTION));
+  }
+}